@@ -1,5 +1,8 @@
+import struct
 import subprocess
 
+import numpy as np
+
 def load_discharges(file_path):
     discharges = []
     with open(file_path, 'r') as f:
@@ -32,6 +35,154 @@ def load_snapshots(file_path):
     return snapshots
 
 
+def _read_binary_header(f):
+    # "GDTR", version, particles, frames, dt2, bytes per coordinate, encoding, index offset
+    magic, version, particle_count, frame_count, snapshot_step, precision, encoding, index_offset = \
+        struct.unpack("<4siiidiiq", f.read(40))
+    if magic != b"GDTR" or version != 1 or encoding not in (0, 1):
+        raise ValueError(f"Unsupported snapshot file: {f.name}")
+
+    header = {
+        "particle_count": particle_count,
+        "frame_count": frame_count,
+        "precision": precision,
+        "encoding": encoding,
+        "index_offset": index_offset,
+        "size": 40,
+    }
+
+    # Compressed files: positions rounded to multiples of the tolerance
+    if encoding == 1:
+        header["tolerance"], header["keyframe_interval"], _ = struct.unpack("<dii", f.read(16))
+        header["size"] = 56
+
+    return header
+
+
+def _binary_frames(file_path, header):
+    coordinate = np.dtype("<f4" if header["precision"] == 4 else "<f8")
+    frame_type = np.dtype([("time", "<f8"), ("positions", coordinate, (header["particle_count"], 2))])
+
+    # Frames have a fixed size, the index is only needed for the compressed encoding
+    return np.memmap(file_path, dtype=frame_type, mode='r', offset=header["size"],
+                     shape=(header["frame_count"],))
+
+
+def _read_varint(data, offset):
+    value = 0
+    shift = 0
+    while True:
+        b = int(data[offset])
+        offset += 1
+        value |= (b & 0x7F) << shift
+        shift += 7
+        if not b & 0x80:
+            # zigzag
+            return (value >> 1) ^ -(value & 1), offset
+
+
+def _decode_compressed(data, header, offset, first, last):
+    """Yields (time, positions) of frames first..last, offset is the start of frame first."""
+    particle_count = header["particle_count"]
+    keyframe_interval = header["keyframe_interval"]
+    current = np.zeros((particle_count, 2), dtype=np.int64)
+
+    for frame in range(first, last + 1):
+        time, = struct.unpack_from("<d", data, offset)
+        offset += 8
+
+        values = np.empty((particle_count, 2), dtype=np.int64)
+        for i in range(particle_count):
+            values[i, 0], offset = _read_varint(data, offset)
+            values[i, 1], offset = _read_varint(data, offset)
+
+        current = values if frame % keyframe_interval == 0 else current + values
+        yield time, current * header["tolerance"]
+
+
+def _compressed_frame_offset(data, header, frame):
+    if header["index_offset"] != 0:
+        offset, = struct.unpack_from("<q", data, header["index_offset"] + 8 * frame)
+        return offset
+
+    # Interrupted run without index: skip the frames before
+    offset = header["size"]
+    for _ in range(frame):
+        offset += 8
+        for _ in range(2 * header["particle_count"]):
+            while data[offset] & 0x80:
+                offset += 1
+            offset += 1
+    return offset
+
+
+def load_binary_frame(file_path, frame):
+    """Returns (time, positions) of a single frame of snapshots.bin without reading the rest."""
+    with open(file_path, 'rb') as f:
+        header = _read_binary_header(f)
+
+    if header["encoding"] == 0:
+        frames = _binary_frames(file_path, header)
+        return float(frames[frame]["time"]), np.array(frames[frame]["positions"], dtype=np.float64)
+
+    # Compressed: decode from the previous keyframe
+    data = np.memmap(file_path, dtype=np.uint8, mode='r')
+    keyframe = frame - frame % header["keyframe_interval"]
+    offset = _compressed_frame_offset(data, header, keyframe)
+    for time, positions in _decode_compressed(data, header, offset, keyframe, frame):
+        pass
+    return time, positions
+
+
+def load_binary_snapshots(file_path):
+    """Same result as load_snapshots, from snapshots.bin."""
+    with open(file_path, 'rb') as f:
+        header = _read_binary_header(f)
+
+    if header["encoding"] == 0:
+        frames = ((frame["time"], frame["positions"]) for frame in _binary_frames(file_path, header))
+    else:
+        with open(file_path, 'rb') as f:
+            data = f.read()
+        frames = _decode_compressed(data, header, header["size"], 0, header["frame_count"] - 1)
+
+    return {
+        float(time): [tuple(p) for p in np.asarray(positions, dtype=np.float64)]
+        for time, positions in frames
+    }
+
+
+def load_summary(file_path):
+    keys = [
+        "discharges", "flow_window", "steady_state_time", "batches",
+        "flow_rate", "standard_error", "stop_time"
+    ]
+    with open(file_path, 'r') as f:
+        summary = {key: float(f.readline().strip()) for key in keys}
+        summary["stop_reason"] = f.readline().strip()
+    return summary
+
+
+def load_flow_curve(file_path):
+    """Returns (times, cumulative discharges, window flow rates)."""
+    times, discharges, flow_rates = [], [], []
+    with open(file_path, 'r') as f:
+        for line in f:
+            t, n, q = line.split()
+            times.append(float(t))
+            discharges.append(int(n))
+            flow_rates.append(float(q))
+    return times, discharges, flow_rates
+
+
+def load_clogs(file_path):
+    """Returns a list of (time, kinetic energy per particle, action)."""
+    with open(file_path, 'r') as f:
+        # Skip the first line as it contains the number of clogs
+        next(f)
+        return [(float(t), float(e), action) for t, e, action in (line.split() for line in f)]
+
+
 def load_obstacles(file_path):
     obstacles = []
     with open(file_path, 'r') as f:
@@ -0,0 +1,92 @@
+package ar.edu.itba.ss.g2;
+
+import ar.edu.itba.ss.g2.config.Config;
+import ar.edu.itba.ss.g2.generation.LatticeParticleGenerator;
+import ar.edu.itba.ss.g2.generation.ObstacleGenerator;
+import ar.edu.itba.ss.g2.model.Particle;
+
+import java.util.List;
+import java.util.Random;
+
+// Systems shared by the benchmarks, always generated with the same seed.
+//
+// Particles have radius 1 and obstacles radiusRatio. The channel is 40 wide
+// and as long as needed for N particles to cover packingFraction of the
+// area left by the obstacles.
+public class Fixture {
+
+    public static final long SEED = 42;
+
+    private static final double WIDTH = 40;
+
+    private final Config config;
+    private final List<Particle> obstacles;
+    private final List<Particle> particles;
+
+    public Fixture(int particleCount, int obstacleCount, double radiusRatio, double packingFraction) {
+        this.config = config(particleCount, obstacleCount, radiusRatio, packingFraction);
+
+        Random random = new Random(SEED);
+        this.obstacles =
+                new ObstacleGenerator(
+                                config.getWidth(),
+                                config.getLength(),
+                                obstacleCount,
+                                config.getObstacleRadius(),
+                                random)
+                        .generate();
+
+        // Rejection sampling doesn't reach the dense fixtures
+        this.particles =
+                new LatticeParticleGenerator(
+                                config.getWidth(),
+                                config.getLength(),
+                                particleCount,
+                                config.getParticleRadius(),
+                                config.getParticleMass(),
+                                config.getAcceleration(),
+                                obstacles,
+                                random)
+                        .generate();
+    }
+
+    public static Config config(
+            int particleCount, int obstacleCount, double radiusRatio, double packingFraction) {
+        double area =
+                particleCount * Math.PI / packingFraction
+                        + obstacleCount * Math.PI * radiusRatio * radiusRatio;
+
+        return new Config.Builder()
+                .width(WIDTH)
+                .length(area / WIDTH)
+                .obstacleCount(obstacleCount)
+                .particleCount(particleCount)
+                .obstacleRadius(radiusRatio)
+                .particleRadius(1)
+                .particleMass(1)
+                .acceleration(1)
+                .normalK(250)
+                .gamma(2.5)
+                .tangentialK(500)
+                .integrationStep(0.001)
+                .snapshotStep(10)
+                .maxTime(Double.POSITIVE_INFINITY)
+                .threads(1)
+                .saveSnapshots(false)
+                .seed(SEED)
+                .build();
+    }
+
+    public Config getConfig() {
+        return config;
+    }
+
+    // New lists every call, the simulation moves its particles
+    public List<Particle> getObstacles() {
+        return obstacles.stream().map(Particle::new).toList();
+    }
+
+    public List<Particle> getParticles() {
+        return particles.stream().map(Particle::new).toList();
+    }
+}
@@ -0,0 +1,88 @@
+package ar.edu.itba.ss.g2.generation;
+
+import ar.edu.itba.ss.g2.Fixture;
+import ar.edu.itba.ss.g2.config.Config;
+import ar.edu.itba.ss.g2.model.Particle;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Initial placement of the particles with each generator. Rejection sampling
+// only gets the packing fractions it can finish.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GenerationBenchmark {
+
+    @Param({"1000", "10000"})
+    public int particleCount;
+
+    @Param({"100"})
+    public int obstacleCount;
+
+    @Param({"1", "2"})
+    public double radiusRatio;
+
+    @Param({"0.1", "0.3"})
+    public double packingFraction;
+
+    private Config config;
+    private List<Particle> obstacles;
+
+    @Setup
+    public void setUp() {
+        config = Fixture.config(particleCount, obstacleCount, radiusRatio, packingFraction);
+        obstacles =
+                new ObstacleGenerator(
+                                config.getWidth(),
+                                config.getLength(),
+                                obstacleCount,
+                                config.getObstacleRadius(),
+                                new Random(Fixture.SEED))
+                        .generate();
+    }
+
+    @Benchmark
+    public List<Particle> random() {
+        return new ParticleGenerator(
+                        config.getWidth(),
+                        config.getLength(),
+                        particleCount,
+                        config.getParticleRadius(),
+                        config.getParticleMass(),
+                        config.getAcceleration(),
+                        obstacles,
+                        new Random(Fixture.SEED))
+                .generate();
+    }
+
+    @Benchmark
+    public List<Particle> lattice() {
+        return new LatticeParticleGenerator(
+                        config.getWidth(),
+                        config.getLength(),
+                        particleCount,
+                        config.getParticleRadius(),
+                        config.getParticleMass(),
+                        config.getAcceleration(),
+                        obstacles,
+                        new Random(Fixture.SEED))
+                .generate();
+    }
+}
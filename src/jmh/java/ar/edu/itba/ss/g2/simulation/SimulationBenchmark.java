@@ -0,0 +1,116 @@
+package ar.edu.itba.ss.g2.simulation;
+
+import ar.edu.itba.ss.g2.Fixture;
+import ar.edu.itba.ss.g2.config.Config;
+import ar.edu.itba.ss.g2.config.ForceKernel;
+import ar.edu.itba.ss.g2.model.ParticleStore;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Neighbour search, force evaluation and a whole step on the same systems.
+// Positions are those of the fixture, so every invocation does the same work.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class SimulationBenchmark {
+
+    @Param({"1000", "10000"})
+    public int particleCount;
+
+    @Param({"100"})
+    public int obstacleCount;
+
+    @Param({"1", "2"})
+    public double radiusRatio;
+
+    @Param({"0.3", "0.6"})
+    public double packingFraction;
+
+    @Param({"scalar", "vector"})
+    public String forceKernel;
+
+    private ParticleStore store;
+    private CellIndexMethod cellIndexMethod;
+    private ObstacleIndex obstacleIndex;
+    private ForceEngine forceEngine;
+    private double[][] forces;
+
+    private Simulation simulation;
+
+    @Setup
+    public void setUp() {
+        Fixture fixture =
+                new Fixture(particleCount, obstacleCount, radiusRatio, packingFraction);
+        Config config =
+                new Config.Builder(fixture.getConfig())
+                        .forceKernel(ForceKernel.fromName(forceKernel))
+                        .build();
+
+        store = new ParticleStore(fixture.getObstacles(), fixture.getParticles());
+        VerletList verletList = new VerletList(store, config.getLength(), config.getWidth(), 0);
+        cellIndexMethod = verletList.getCellIndexMethod();
+        obstacleIndex =
+                new ObstacleIndex(store, cellIndexMethod, config.getParticleRadius());
+        forceEngine =
+                new ForceEngine(
+                        store,
+                        verletList,
+                        config.getWidth(),
+                        config.getAcceleration(),
+                        config.getNormalK(),
+                        config.getGamma(),
+                        config.getTangentialK(),
+                        1,
+                        config.getForceKernel());
+        forces = new double[2][store.getParticleCount()];
+
+        simulation =
+                new Simulation(
+                        fixture.getParticles(),
+                        fixture.getObstacles(),
+                        config,
+                        new Random(Fixture.SEED));
+        simulation.initialize();
+    }
+
+    @TearDown
+    public void tearDown() {
+        forceEngine.close();
+        simulation.close();
+    }
+
+    @Benchmark
+    public int computeNeighbours() {
+        cellIndexMethod.computeNeighbours(store, obstacleIndex);
+        return cellIndexMethod.getPairCount();
+    }
+
+    @Benchmark
+    public double[][] calculateForces() {
+        forceEngine.calculate(forces);
+        return forces;
+    }
+
+    // Particles move, so this one follows the system from the fixture on
+    @Benchmark
+    public void integrate() {
+        simulation.integrate();
+    }
+}
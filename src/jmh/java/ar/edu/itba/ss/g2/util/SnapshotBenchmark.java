@@ -0,0 +1,111 @@
+package ar.edu.itba.ss.g2.util;
+
+import ar.edu.itba.ss.g2.Fixture;
+import ar.edu.itba.ss.g2.config.Config;
+import ar.edu.itba.ss.g2.config.SnapshotFormat;
+import ar.edu.itba.ss.g2.model.Particle;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Encoding and writing one snapshot in each format, on the writer thread's
+// side of AsyncSnapshotWriter. Particles drift a little every frame so the
+// compressed deltas are not all zero. A new file is started every iteration.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SnapshotBenchmark {
+
+    @Param({"1000", "10000"})
+    public int particleCount;
+
+    @Param({"TEXT", "BINARY", "COMPRESSED"})
+    public SnapshotFormat format;
+
+    private Config config;
+    private double[] x;
+    private double[] y;
+    private double time;
+
+    private Path directory;
+    private FrameEncoder encoder;
+
+    @Setup
+    public void setUp() throws IOException {
+        Fixture fixture = new Fixture(particleCount, 100, 1, 0.3);
+        config = fixture.getConfig();
+
+        List<Particle> particles = fixture.getParticles();
+        x = new double[particleCount];
+        y = new double[particleCount];
+        for (int i = 0; i < particleCount; i++) {
+            x[i] = particles.get(i).getX();
+            y[i] = particles.get(i).getY();
+        }
+
+        directory = Files.createTempDirectory("snapshot-benchmark");
+    }
+
+    @Setup(Level.Iteration)
+    public void openFile() throws IOException {
+        encoder =
+                switch (format) {
+                    case TEXT -> new TextFrameEncoder(
+                            directory.resolve("snapshots.txt"), particleCount);
+                    case BINARY -> new BinaryFrameEncoder(
+                            directory.resolve("snapshots.bin"),
+                            particleCount,
+                            config.getSnapshotStep(),
+                            config.getSnapshotPrecision());
+                    case COMPRESSED -> new BinaryFrameEncoder(
+                            directory.resolve("snapshots.bin"),
+                            particleCount,
+                            config.getSnapshotStep(),
+                            config.getSnapshotTolerance(),
+                            config.getKeyframeInterval());
+                };
+    }
+
+    @Benchmark
+    public void encode() throws IOException {
+        for (int i = 0; i < particleCount; i++) {
+            x[i] += 1e-3;
+        }
+        time += config.getSnapshotStep();
+
+        encoder.encode(time, x, y);
+        encoder.flush();
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeFile() throws IOException {
+        encoder.close();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(directory.resolve("snapshots.txt"));
+        Files.deleteIfExists(directory.resolve("snapshots.bin"));
+        Files.delete(directory);
+    }
+}
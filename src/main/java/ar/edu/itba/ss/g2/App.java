@@ -2,12 +2,23 @@ package ar.edu.itba.ss.g2;
 
 import ar.edu.itba.ss.g2.config.ArgParser;
 import ar.edu.itba.ss.g2.config.Config;
+import ar.edu.itba.ss.g2.generation.LatticeParticleGenerator;
 import ar.edu.itba.ss.g2.generation.ObstacleGenerator;
 import ar.edu.itba.ss.g2.generation.ParticleGenerator;
 import ar.edu.itba.ss.g2.model.Particle;
+import ar.edu.itba.ss.g2.simulation.Checkpoint;
+import ar.edu.itba.ss.g2.simulation.Continuation;
+import ar.edu.itba.ss.g2.simulation.IntegratorComparison;
+import ar.edu.itba.ss.g2.simulation.PrecisionComparison;
 import ar.edu.itba.ss.g2.simulation.Simulation;
+import ar.edu.itba.ss.g2.simulation.StopReason;
+import ar.edu.itba.ss.g2.simulation.TimeStepController;
+import ar.edu.itba.ss.g2.simulation.VerletList;
+import ar.edu.itba.ss.g2.util.AsyncSnapshotWriter;
 import ar.edu.itba.ss.g2.util.FileUtil;
+import ar.edu.itba.ss.g2.util.FlowCurveWriter;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.Random;
 
@@ -15,6 +26,12 @@ public class App {
     public static void main(String[] args) {
 
         ArgParser parser = new ArgParser(args);
+
+        String sweepManifest = parser.getSweepManifest();
+        if (sweepManifest != null) {
+            System.exit(SweepRunner.run(sweepManifest, args) ? 0 : 1);
+        }
+
         Config config = parser.parse();
 
         if (config == null) {
@@ -22,8 +39,160 @@ public class App {
             System.exit(1);
         }
 
+        if (config.isCompareIntegrators()) {
+            Random random = new Random(config.getSeed());
+            List<Particle> obstacles = generateObstacles(config, random);
+            List<Particle> particles = generateParticles(config, obstacles, random);
+
+            compareIntegrators(particles, obstacles, config);
+            System.exit(0);
+        }
+
+        if (config.isComparePrecision()) {
+            Random random = new Random(config.getSeed());
+            List<Particle> obstacles = generateObstacles(config, random);
+            List<Particle> particles = generateParticles(config, obstacles, random);
+
+            comparePrecision(particles, obstacles, config);
+            System.exit(0);
+        }
+
+        // Any other failure propagates with its stack trace
+        Simulation simulation = null;
+        try {
+            simulation = run(config);
+        } catch (IOException e) {
+            System.err.println("Error while reading or writing output: " + e.getMessage());
+            System.exit(1);
+        }
+
+        TimeStepController timeStepController = simulation.getTimeStepController();
+        if (timeStepController != null) {
+            System.out.println(
+                    "Adaptive integration: "
+                            + timeStepController.getSteps()
+                            + " steps, dt between "
+                            + timeStepController.getSmallestStep()
+                            + " and "
+                            + timeStepController.getLargestStep()
+                            + " (mean "
+                            + timeStepController.getMeanStep()
+                            + ")");
+        }
+
+        VerletList verletList = simulation.getVerletList();
+        System.out.println(
+                "Neighbour lists rebuilt "
+                        + verletList.getRebuildCount()
+                        + " times in "
+                        + verletList.getUpdateCount()
+                        + " force evaluations (skin "
+                        + verletList.getSkin()
+                        + ")");
+
+        System.exit(0);
+    }
+
+    // Generates the bodies, runs the simulation and writes its output. Every
+    // run has its own Random, so runs of a sweep don't depend on each other
+    static Simulation run(Config config) throws IOException {
         Random random = new Random(config.getSeed());
 
+        List<Particle> obstacles = generateObstacles(config, random);
+        List<Particle> particles = generateParticles(config, obstacles, random);
+
+        // Snapshots are streamed during the run, so the rest of the output is
+        // written first
+        FileUtil.serializeConfig(config, config.getOutputDirectory());
+        FileUtil.serializeObstacles(obstacles, config.getOutputDirectory());
+
+        // Without a checkpoint a resumed run starts from the beginning
+        Checkpoint checkpoint =
+                config.isResume()
+                        ? FileUtil.deserializeCheckpoint(config.getOutputDirectory())
+                        : null;
+
+        Simulation simulation = null;
+        try (AsyncSnapshotWriter snapshotWriter =
+                        config.isSaveSnapshots()
+                                ? FileUtil.createSnapshotWriter(
+                                        config,
+                                        particles.size(),
+                                        config.getOutputDirectory(),
+                                        checkpoint)
+                                : null;
+                FlowCurveWriter flowCurveWriter =
+                        FileUtil.createFlowCurveWriter(config.getOutputDirectory(), checkpoint)) {
+
+            simulation = new Simulation(particles, obstacles, config, random, snapshotWriter);
+            simulation.getFlowAnalytics().setListener(flowCurveWriter);
+
+            if (checkpoint != null) {
+                simulation.restore(checkpoint);
+                System.out.println("Resuming at t = " + simulation.getCurrentTime());
+            }
+
+            // The output is flushed first so it's never behind the checkpoint
+            simulation.setCheckpointListener(
+                    c -> {
+                        if (snapshotWriter != null) {
+                            snapshotWriter.sync();
+                        }
+                        flowCurveWriter.flush();
+                        FileUtil.serializeCheckpoint(c, config.getOutputDirectory());
+                    });
+
+            System.out.println("Running simulation...");
+
+            simulation.run();
+
+            // The run up to max-time equilibrates the continuation
+            if (!config.getContinuation().isEmpty()
+                    && simulation.getStopReason() != StopReason.CLOG) {
+                List<Continuation.Step> steps =
+                        Continuation.run(
+                                simulation,
+                                config.getContinuation(),
+                                config.getSettleTime(),
+                                config.getMeasureTime(),
+                                config.getFlowWindow(),
+                                step ->
+                                        System.out.println(
+                                                "Acceleration "
+                                                        + step.acceleration()
+                                                        + ": Q = "
+                                                        + step.flowRate()));
+                FileUtil.serializeContinuation(steps, config.getOutputDirectory());
+            }
+        } finally {
+            // Runs of a sweep would otherwise keep the threads of their pools
+            if (simulation != null) {
+                simulation.close();
+            }
+        }
+
+        FileUtil.serializeDischarges(simulation.getDischargeTimes(), config.getOutputDirectory());
+        FileUtil.serializeClogs(simulation.getClogEvents(), config.getOutputDirectory());
+        FileUtil.serializeFlowSummary(
+                simulation.getFlowAnalytics(),
+                simulation.getCurrentTime(),
+                simulation.getStopReason(),
+                config.getOutputDirectory());
+        if (config.isProfile()) {
+            FileUtil.serializeMetrics(simulation.getProfiler(), config.getOutputDirectory());
+        }
+
+        System.out.println(
+                "Stopped at t = "
+                        + simulation.getCurrentTime()
+                        + " ("
+                        + simulation.getStopReason().getName()
+                        + ")");
+
+        return simulation;
+    }
+
+    private static List<Particle> generateObstacles(Config config, Random random) {
         System.out.println("Generating obstacles...");
 
         ObstacleGenerator obstacleGenerator =
@@ -34,56 +203,89 @@ public class App {
                         config.getObstacleRadius(),
                         random);
 
-        List<Particle> obstacles = obstacleGenerator.generate();
+        return obstacleGenerator.generate();
+    }
 
+    private static List<Particle> generateParticles(
+            Config config, List<Particle> obstacles, Random random) {
         System.out.println("Generating particles...");
 
-        ParticleGenerator particleGenerator =
-                new ParticleGenerator(
-                        config.getWidth(),
-                        config.getLength(),
-                        config.getParticleCount(),
-                        config.getParticleRadius(),
-                        config.getParticleMass(),
-                        config.getAcceleration(),
-                        obstacles,
-                        random);
+        return switch (config.getPlacement()) {
+            case RANDOM -> new ParticleGenerator(
+                            config.getWidth(),
+                            config.getLength(),
+                            config.getParticleCount(),
+                            config.getParticleRadius(),
+                            config.getParticleMass(),
+                            config.getAcceleration(),
+                            obstacles,
+                            random)
+                    .generate();
+            case LATTICE -> new LatticeParticleGenerator(
+                            config.getWidth(),
+                            config.getLength(),
+                            config.getParticleCount(),
+                            config.getParticleRadius(),
+                            config.getParticleMass(),
+                            config.getAcceleration(),
+                            obstacles,
+                            random)
+                    .generate();
+        };
+    }
 
-        List<Particle> particles = particleGenerator.generate();
+    private static void compareIntegrators(
+            List<Particle> particles, List<Particle> obstacles, Config config) {
 
-        Simulation simulation =
-                new Simulation(
-                        particles,
-                        obstacles,
-                        config.getWidth(),
-                        config.getLength(),
-                        config.getAcceleration(),
-                        config.getNormalK(),
-                        config.getGamma(),
-                        config.getTangentialK(),
-                        config.getIntegrationStep(),
-                        config.getSnapshotStep(),
-                        config.getMaxTime(),
-                        random);
+        List<IntegratorComparison.Result> results =
+                new IntegratorComparison(particles, obstacles, config).compare();
 
-        System.out.println("Running simulation...");
+        System.out.println("Integrator        Evals/step  Steps/s     Energy drift  Max error");
+        for (IntegratorComparison.Result result : results) {
+            System.out.println(
+                    String.format(
+                            "%-17s %-11d %-11.1f %-13.3e %.3e",
+                            result.integrator().getName(),
+                            result.forceEvaluationsPerStep(),
+                            result.stepsPerSecond(),
+                            result.energyDrift(),
+                            result.maxEnergyError()));
+        }
 
-        simulation.run();
+        try {
+            FileUtil.serializeIntegratorComparison(results, config.getOutputDirectory());
+        } catch (Exception e) {
+            System.err.println("Error while serializing output");
+            System.exit(1);
+        }
+    }
+
+    private static void comparePrecision(
+            List<Particle> particles, List<Particle> obstacles, Config config) {
+
+        List<PrecisionComparison.Result> results =
+                new PrecisionComparison(particles, obstacles, config).compare();
 
-        List<List<Particle>> snapshots = simulation.getSnapshots();
-        List<Double> dischargeTimes = simulation.getDischargeTimes();
+        System.out.println(
+                "Precision  Discharges  Flow rate            Seconds   Curve diff  Deviation");
+        for (PrecisionComparison.Result result : results) {
+            System.out.println(
+                    String.format(
+                            "%-10s %-11d %-8.4f +- %-8.4f %-9.2f %-11d %.2f",
+                            result.precision().getName(),
+                            result.discharges(),
+                            result.flowRate(),
+                            result.standardError(),
+                            result.seconds(),
+                            result.maxCurveDifference(),
+                            result.flowRateDeviation()));
+        }
 
         try {
-            FileUtil.serializeConfig(config, config.getOutputDirectory());
-            FileUtil.serializeObstacles(obstacles, config.getOutputDirectory());
-            FileUtil.serializeDischarges(dischargeTimes, config.getOutputDirectory());
-            FileUtil.serializeSnapshots(
-                    snapshots, config.getSnapshotStep(), config.getOutputDirectory());
+            FileUtil.serializePrecisionComparison(results, config.getOutputDirectory());
         } catch (Exception e) {
             System.err.println("Error while serializing output");
             System.exit(1);
         }
-
-        System.exit(0);
     }
 }
@@ -0,0 +1,143 @@
+package ar.edu.itba.ss.g2;
+
+import ar.edu.itba.ss.g2.config.ArgParser;
+import ar.edu.itba.ss.g2.config.Config;
+import ar.edu.itba.ss.g2.config.SweepManifest;
+import ar.edu.itba.ss.g2.simulation.Simulation;
+import ar.edu.itba.ss.g2.util.FileUtil;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Runs every combination of a SweepManifest in this JVM, sweepWorkers at a
+// time, so the classes loaded and the code compiled by the JIT are shared by
+// all runs. Run i is written to <output-directory>/run_i and sweep.txt lists
+// them all. The runs are the parallelism: each one evaluates its forces on a
+// single thread, so at most sweepWorkers cores are busy.
+public class SweepRunner {
+
+    public record Result(
+            String name,
+            Map<String, String> parameters,
+            boolean completed,
+            int discharges,
+            double seconds) {}
+
+    private SweepRunner() {
+        throw new RuntimeException("Util class");
+    }
+
+    // Returns whether every run completed, false without running any when the
+    // manifest or one of its runs is invalid
+    public static boolean run(String manifestFile, String[] args) {
+        List<Map<String, String>> runs;
+        try {
+            runs = SweepManifest.read(Path.of(manifestFile)).getRuns();
+        } catch (IOException e) {
+            System.err.println("Error while reading sweep manifest: " + e.getMessage());
+            return false;
+        }
+
+        // Every run is validated before starting any
+        List<Config> configs = new ArrayList<>();
+        for (int i = 0; i < runs.size(); i++) {
+            ArgParser parser = new ArgParser(SweepManifest.toArgs(runs.get(i), args));
+            Config config = parser.parse();
+
+            if (config == null) {
+                System.err.println("Invalid sweep run " + i + ": " + runs.get(i));
+                parser.printHelp();
+                return false;
+            }
+
+            if (config.getThreads() > 1) {
+                System.out.println("Sweep run " + i + " uses 1 thread instead of --threads");
+            }
+
+            configs.add(
+                    new Config.Builder(config)
+                            .threads(1)
+                            .outputDirectory(
+                                    Path.of(config.getOutputDirectory(), name(i, runs.size()))
+                                            .toString())
+                            .build());
+        }
+
+        if (configs.isEmpty()) {
+            System.err.println("Empty sweep manifest: " + manifestFile);
+            return false;
+        }
+
+        String outputDirectory =
+                Path.of(configs.get(0).getOutputDirectory()).getParent().toString();
+        int workers = Math.min(configs.get(0).getSweepWorkers(), configs.size());
+
+        System.out.println(
+                "Running " + configs.size() + " simulations on " + workers + " workers...");
+
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+
+        List<Future<Result>> futures = new ArrayList<>();
+        for (int i = 0; i < configs.size(); i++) {
+            Config config = configs.get(i);
+            String name = name(i, configs.size());
+            Map<String, String> parameters = runs.get(i);
+
+            futures.add(executor.submit(() -> runOne(name, parameters, config)));
+        }
+
+        List<Result> results = new ArrayList<>();
+        for (Future<Result> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (InterruptedException | ExecutionException e) {
+                executor.shutdownNow();
+                System.err.println("Sweep interrupted");
+                return false;
+            }
+        }
+
+        executor.shutdown();
+
+        try {
+            FileUtil.serializeSweep(results, outputDirectory);
+        } catch (IOException e) {
+            System.err.println("Error while serializing output: " + e.getMessage());
+            return false;
+        }
+
+        long failed = results.stream().filter(result -> !result.completed()).count();
+        System.out.println("Sweep finished, " + failed + " of " + results.size() + " runs failed");
+        return failed == 0;
+    }
+
+    // A failed run is reported in sweep.txt instead of stopping the sweep
+    private static Result runOne(String name, Map<String, String> parameters, Config config) {
+        long start = System.nanoTime();
+        try {
+            Simulation simulation = App.run(config);
+            return new Result(
+                    name,
+                    parameters,
+                    true,
+                    simulation.getDischargeTimes().size(),
+                    (System.nanoTime() - start) / 1e9);
+        } catch (Exception e) {
+            System.err.println("Error in " + name + ": " + e);
+            return new Result(name, parameters, false, 0, (System.nanoTime() - start) / 1e9);
+        }
+    }
+
+    // Zero padded so the directories sort in run order
+    private static String name(int run, int runs) {
+        int digits = String.valueOf(runs - 1).length();
+        return String.format("run_%0" + digits + "d", run);
+    }
+}
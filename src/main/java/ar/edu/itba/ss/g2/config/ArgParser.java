@@ -7,6 +7,7 @@ import org.apache.commons.cli.HelpFormatter;
 import org.apache.commons.cli.Option;
 import org.apache.commons.cli.Options;
 
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
 
@@ -29,6 +30,176 @@ public class ArgParser {
                     new Option("dt", "integration-step", true, "Integration step"),
                     new Option("dt2", "snapshot-step", true, "Snapshot step"),
                     new Option("tf", "max-time", true, "Max time"),
+                    new Option(
+                            "adt",
+                            "adaptive-step",
+                            false,
+                            "Choose the integration step from the contacts, between dtmin and"
+                                    + " dtmax"),
+                    new Option(
+                            "dtmin",
+                            "min-integration-step",
+                            true,
+                            "Smallest adaptive integration step (default dt / 100)"),
+                    new Option(
+                            "dtmax",
+                            "max-integration-step",
+                            true,
+                            "Largest adaptive integration step (default dt)"),
+                    new Option(
+                            "int",
+                            "integrator",
+                            true,
+                            "Integration scheme: beeman or velocity-verlet (default beeman)"),
+                    new Option(
+                            "cmp",
+                            "compare-integrators",
+                            false,
+                            "Compare the throughput and energy drift of every integrator for tf"
+                                    + " instead of running the simulation"),
+                    new Option(
+                            "skin",
+                            "verlet-skin",
+                            true,
+                            "Skin distance of the neighbour lists, 0 rebuilds them on every move"
+                                    + " (default 0)"),
+                    new Option(
+                            "threads",
+                            "threads",
+                            true,
+                            "Threads used to evaluate the forces, the trajectory doesn't depend on it"
+                                    + " (default 1)"),
+                    new Option(
+                            "kernel",
+                            "force-kernel",
+                            true,
+                            "Contact force kernel: scalar or vector, which needs --add-modules"
+                                    + " jdk.incubator.vector (default scalar)"),
+                    new Option(
+                            "cmpprec",
+                            "compare-precision",
+                            false,
+                            "Compare the discharges and flow rate of every state precision for tf"
+                                    + " instead of running the simulation"),
+                    new Option(
+                            "fmt",
+                            "snapshot-format",
+                            true,
+                            "Snapshot file format: text, binary or compressed (default text)"),
+                    new Option(
+                            "prec",
+                            "snapshot-precision",
+                            true,
+                            "Bits per coordinate of the binary snapshots: 32 or 64 (default 64)"),
+                    new Option(
+                            "tol",
+                            "snapshot-tolerance",
+                            true,
+                            "Compressed snapshots round positions to multiples of it"
+                                    + " (default 1e-5)"),
+                    new Option(
+                            "key",
+                            "keyframe-interval",
+                            true,
+                            "Frames between full frames of the compressed snapshots"
+                                    + " (default 100)"),
+                    new Option(
+                            "window",
+                            "flow-window",
+                            true,
+                            "Window of the flow rate and the steady state detection (default 10)"),
+                    new Option(
+                            "nosnap",
+                            "no-snapshots",
+                            false,
+                            "Don't write snapshots, only the discharges and the flow summary"),
+                    new Option(
+                            "ci",
+                            "target-confidence",
+                            true,
+                            "Stop once the 95% confidence interval of the steady flow rate is"
+                                    + " within this fraction of it, e.g. 0.05"),
+                    new Option(
+                            "stopn",
+                            "stop-discharges",
+                            true,
+                            "Stop once this many particles were discharged"),
+                    new Option(
+                            "clog",
+                            "clog-interval",
+                            true,
+                            "Time without discharges after which a slow channel is clogged"
+                                    + " (default 0, disabled)"),
+                    new Option(
+                            "clogke",
+                            "clog-energy",
+                            true,
+                            "Mean kinetic energy per particle below which the channel can be"
+                                    + " clogged (default 1e-3)"),
+                    new Option(
+                            "clogp",
+                            "clog-policy",
+                            true,
+                            "What to do on a clog: abort or perturb (default abort)"),
+                    new Option(
+                            "ckpt",
+                            "checkpoint-interval",
+                            true,
+                            "Simulated time between checkpoints of the whole state (default: no"
+                                    + " checkpoints)"),
+                    new Option(
+                            "ckptw",
+                            "checkpoint-wall-interval",
+                            true,
+                            "Seconds of wall-clock time between checkpoints (default: no"
+                                    + " checkpoints)"),
+                    new Option(
+                            "resume",
+                            "resume",
+                            false,
+                            "Continue from the checkpoint in the output directory, if there is"
+                                    + " one"),
+                    new Option(
+                            "cont",
+                            "continuation",
+                            true,
+                            "Comma separated accelerations to step through after max-time, each"
+                                    + " from the final state of the previous one"),
+                    new Option(
+                            "settle",
+                            "settle-time",
+                            true,
+                            "Time each continuation step runs before measuring (default 10)"),
+                    new Option(
+                            "measure",
+                            "measure-time",
+                            true,
+                            "Time the flow rate of each continuation step is measured (default"
+                                    + " 50)"),
+                    new Option(
+                            "place",
+                            "placement",
+                            true,
+                            "Initial placement of the particles: random or lattice (default"
+                                    + " random)"),
+                    new Option(
+                            "prof",
+                            "profile",
+                            false,
+                            "Time each phase of the steps and write metrics.txt at the end of the"
+                                    + " run"),
+                    new Option(
+                            "sweep",
+                            "sweep",
+                            true,
+                            "Manifest of a parameter sweep, each run is written to a directory"
+                                    + " inside the output directory"),
+                    new Option(
+                            "workers",
+                            "sweep-workers",
+                            true,
+                            "Runs of a sweep simulated at the same time (default: available"
+                                    + " processors)"),
                     new Option("out", "output-directory", true, "Output directory"),
                     new Option("s", "seed", true, "Seed for random number generation"));
 
@@ -43,6 +214,16 @@ public class ArgParser {
         this.options = options;
     }
 
+    // Manifest of the sweep, null for a single run. The options of each run
+    // are parsed with the manifest values (see SweepManifest)
+    public String getSweepManifest() {
+        try {
+            return new DefaultParser().parse(options, args).getOptionValue("sweep");
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
     public Config parse() {
 
         CommandLineParser parser = new DefaultParser();
@@ -325,6 +506,422 @@ public class ArgParser {
             return null;
         }
 
+        // adaptive-step
+        builder.adaptiveStep(cmd.hasOption("adt"));
+
+        // min-integration-step
+        if (cmd.hasOption("dtmin")) {
+            double minIntegrationStep;
+
+            try {
+                minIntegrationStep = Double.parseDouble(cmd.getOptionValue("dtmin"));
+            } catch (NumberFormatException e) {
+                System.err.println("Invalid Min Integration Step: " + cmd.getOptionValue("dtmin"));
+                return null;
+            }
+
+            if (minIntegrationStep <= 0
+                    || minIntegrationStep > Double.parseDouble(cmd.getOptionValue("dt"))) {
+                System.err.println("Invalid Min Integration Step: " + cmd.getOptionValue("dtmin"));
+                return null;
+            }
+
+            builder.minIntegrationStep(minIntegrationStep);
+        }
+
+        // max-integration-step
+        if (cmd.hasOption("dtmax")) {
+            double maxIntegrationStep;
+
+            try {
+                maxIntegrationStep = Double.parseDouble(cmd.getOptionValue("dtmax"));
+            } catch (NumberFormatException e) {
+                System.err.println("Invalid Max Integration Step: " + cmd.getOptionValue("dtmax"));
+                return null;
+            }
+
+            if (maxIntegrationStep < Double.parseDouble(cmd.getOptionValue("dt"))) {
+                System.err.println("Invalid Max Integration Step: " + cmd.getOptionValue("dtmax"));
+                return null;
+            }
+
+            builder.maxIntegrationStep(maxIntegrationStep);
+        }
+
+        // integrator
+        if (cmd.hasOption("int")) {
+            try {
+                builder.integrator(IntegratorType.fromName(cmd.getOptionValue("int")));
+            } catch (IllegalArgumentException e) {
+                System.err.println("Invalid Integrator: " + cmd.getOptionValue("int"));
+                return null;
+            }
+        }
+
+        // compare-integrators
+        builder.compareIntegrators(cmd.hasOption("cmp"));
+
+        // verlet-skin
+        if (cmd.hasOption("skin")) {
+            double skin;
+
+            try {
+                skin = Double.parseDouble(cmd.getOptionValue("skin"));
+            } catch (NumberFormatException e) {
+                System.err.println("Invalid Verlet Skin: " + cmd.getOptionValue("skin"));
+                return null;
+            }
+
+            if (skin < 0) {
+                System.err.println("Invalid Verlet Skin: " + cmd.getOptionValue("skin"));
+                return null;
+            }
+
+            builder.skin(skin);
+        }
+
+        // threads
+        if (cmd.hasOption("threads")) {
+            int threads;
+
+            try {
+                threads = Integer.parseInt(cmd.getOptionValue("threads"));
+            } catch (NumberFormatException e) {
+                System.err.println("Invalid Threads: " + cmd.getOptionValue("threads"));
+                return null;
+            }
+
+            if (threads <= 0) {
+                System.err.println("Invalid Threads: " + cmd.getOptionValue("threads"));
+                return null;
+            }
+
+            builder.threads(threads);
+        }
+
+        // force-kernel
+        if (cmd.hasOption("kernel")) {
+            try {
+                builder.forceKernel(ForceKernel.fromName(cmd.getOptionValue("kernel")));
+            } catch (IllegalArgumentException e) {
+                System.err.println("Invalid Force Kernel: " + cmd.getOptionValue("kernel"));
+                return null;
+            }
+        }
+
+        // compare-precision
+        builder.comparePrecision(cmd.hasOption("cmpprec"));
+
+        // snapshot-format
+        if (cmd.hasOption("fmt")) {
+            try {
+                builder.snapshotFormat(SnapshotFormat.fromName(cmd.getOptionValue("fmt")));
+            } catch (IllegalArgumentException e) {
+                System.err.println("Invalid Snapshot Format: " + cmd.getOptionValue("fmt"));
+                return null;
+            }
+        }
+
+        // snapshot-precision
+        if (cmd.hasOption("prec")) {
+            int precision;
+
+            try {
+                precision = Integer.parseInt(cmd.getOptionValue("prec"));
+            } catch (NumberFormatException e) {
+                System.err.println("Invalid Snapshot Precision: " + cmd.getOptionValue("prec"));
+                return null;
+            }
+
+            if (precision != 32 && precision != 64) {
+                System.err.println("Invalid Snapshot Precision: " + cmd.getOptionValue("prec"));
+                return null;
+            }
+
+            builder.snapshotPrecision(precision);
+        }
+
+        // snapshot-tolerance
+        if (cmd.hasOption("tol")) {
+            double tolerance;
+
+            try {
+                tolerance = Double.parseDouble(cmd.getOptionValue("tol"));
+            } catch (NumberFormatException e) {
+                System.err.println("Invalid Snapshot Tolerance: " + cmd.getOptionValue("tol"));
+                return null;
+            }
+
+            if (tolerance <= 0) {
+                System.err.println("Invalid Snapshot Tolerance: " + cmd.getOptionValue("tol"));
+                return null;
+            }
+
+            builder.snapshotTolerance(tolerance);
+        }
+
+        // keyframe-interval
+        if (cmd.hasOption("key")) {
+            int keyframeInterval;
+
+            try {
+                keyframeInterval = Integer.parseInt(cmd.getOptionValue("key"));
+            } catch (NumberFormatException e) {
+                System.err.println("Invalid Keyframe Interval: " + cmd.getOptionValue("key"));
+                return null;
+            }
+
+            if (keyframeInterval <= 0) {
+                System.err.println("Invalid Keyframe Interval: " + cmd.getOptionValue("key"));
+                return null;
+            }
+
+            builder.keyframeInterval(keyframeInterval);
+        }
+
+        // flow-window
+        if (cmd.hasOption("window")) {
+            double flowWindow;
+
+            try {
+                flowWindow = Double.parseDouble(cmd.getOptionValue("window"));
+            } catch (NumberFormatException e) {
+                System.err.println("Invalid Flow Window: " + cmd.getOptionValue("window"));
+                return null;
+            }
+
+            if (flowWindow <= 0) {
+                System.err.println("Invalid Flow Window: " + cmd.getOptionValue("window"));
+                return null;
+            }
+
+            builder.flowWindow(flowWindow);
+        }
+
+        // no-snapshots
+        builder.saveSnapshots(!cmd.hasOption("nosnap"));
+
+        // target-confidence
+        if (cmd.hasOption("ci")) {
+            double targetConfidence;
+
+            try {
+                targetConfidence = Double.parseDouble(cmd.getOptionValue("ci"));
+            } catch (NumberFormatException e) {
+                System.err.println("Invalid Target Confidence: " + cmd.getOptionValue("ci"));
+                return null;
+            }
+
+            if (targetConfidence <= 0) {
+                System.err.println("Invalid Target Confidence: " + cmd.getOptionValue("ci"));
+                return null;
+            }
+
+            builder.targetConfidence(targetConfidence);
+        }
+
+        // stop-discharges
+        if (cmd.hasOption("stopn")) {
+            long stopDischarges;
+
+            try {
+                stopDischarges = Long.parseLong(cmd.getOptionValue("stopn"));
+            } catch (NumberFormatException e) {
+                System.err.println("Invalid Stop Discharges: " + cmd.getOptionValue("stopn"));
+                return null;
+            }
+
+            if (stopDischarges <= 0) {
+                System.err.println("Invalid Stop Discharges: " + cmd.getOptionValue("stopn"));
+                return null;
+            }
+
+            builder.stopDischarges(stopDischarges);
+        }
+
+        // clog-interval
+        if (cmd.hasOption("clog")) {
+            double clogInterval;
+
+            try {
+                clogInterval = Double.parseDouble(cmd.getOptionValue("clog"));
+            } catch (NumberFormatException e) {
+                System.err.println("Invalid Clog Interval: " + cmd.getOptionValue("clog"));
+                return null;
+            }
+
+            if (clogInterval < 0) {
+                System.err.println("Invalid Clog Interval: " + cmd.getOptionValue("clog"));
+                return null;
+            }
+
+            builder.clogInterval(clogInterval);
+        }
+
+        // clog-energy
+        if (cmd.hasOption("clogke")) {
+            double clogEnergy;
+
+            try {
+                clogEnergy = Double.parseDouble(cmd.getOptionValue("clogke"));
+            } catch (NumberFormatException e) {
+                System.err.println("Invalid Clog Energy: " + cmd.getOptionValue("clogke"));
+                return null;
+            }
+
+            if (clogEnergy <= 0) {
+                System.err.println("Invalid Clog Energy: " + cmd.getOptionValue("clogke"));
+                return null;
+            }
+
+            builder.clogEnergy(clogEnergy);
+        }
+
+        // clog-policy
+        if (cmd.hasOption("clogp")) {
+            try {
+                builder.clogPolicy(ClogPolicy.fromName(cmd.getOptionValue("clogp")));
+            } catch (IllegalArgumentException e) {
+                System.err.println("Invalid Clog Policy: " + cmd.getOptionValue("clogp"));
+                return null;
+            }
+        }
+
+        // checkpoint-interval
+        if (cmd.hasOption("ckpt")) {
+            double checkpointInterval;
+
+            try {
+                checkpointInterval = Double.parseDouble(cmd.getOptionValue("ckpt"));
+            } catch (NumberFormatException e) {
+                System.err.println("Invalid Checkpoint Interval: " + cmd.getOptionValue("ckpt"));
+                return null;
+            }
+
+            if (checkpointInterval <= 0) {
+                System.err.println("Invalid Checkpoint Interval: " + cmd.getOptionValue("ckpt"));
+                return null;
+            }
+
+            builder.checkpointInterval(checkpointInterval);
+        }
+
+        // checkpoint-wall-interval
+        if (cmd.hasOption("ckptw")) {
+            double checkpointWallInterval;
+
+            try {
+                checkpointWallInterval = Double.parseDouble(cmd.getOptionValue("ckptw"));
+            } catch (NumberFormatException e) {
+                System.err.println(
+                        "Invalid Checkpoint Wall Interval: " + cmd.getOptionValue("ckptw"));
+                return null;
+            }
+
+            if (checkpointWallInterval <= 0) {
+                System.err.println(
+                        "Invalid Checkpoint Wall Interval: " + cmd.getOptionValue("ckptw"));
+                return null;
+            }
+
+            builder.checkpointWallInterval(checkpointWallInterval);
+        }
+
+        // resume
+        builder.resume(cmd.hasOption("resume"));
+
+        // continuation
+        if (cmd.hasOption("cont")) {
+            List<Double> continuation = new ArrayList<>();
+
+            try {
+                for (String value : cmd.getOptionValue("cont").split(",")) {
+                    continuation.add(Double.parseDouble(value.trim()));
+                }
+            } catch (NumberFormatException e) {
+                System.err.println("Invalid Continuation: " + cmd.getOptionValue("cont"));
+                return null;
+            }
+
+            // A checkpoint doesn't know which step it was taken in
+            if (cmd.hasOption("resume")) {
+                System.err.println("Continuation can't be resumed");
+                return null;
+            }
+
+            builder.continuation(continuation);
+        }
+
+        // settle-time
+        if (cmd.hasOption("settle")) {
+            double settleTime;
+
+            try {
+                settleTime = Double.parseDouble(cmd.getOptionValue("settle"));
+            } catch (NumberFormatException e) {
+                System.err.println("Invalid Settle Time: " + cmd.getOptionValue("settle"));
+                return null;
+            }
+
+            if (settleTime < 0) {
+                System.err.println("Invalid Settle Time: " + cmd.getOptionValue("settle"));
+                return null;
+            }
+
+            builder.settleTime(settleTime);
+        }
+
+        // measure-time
+        if (cmd.hasOption("measure")) {
+            double measureTime;
+
+            try {
+                measureTime = Double.parseDouble(cmd.getOptionValue("measure"));
+            } catch (NumberFormatException e) {
+                System.err.println("Invalid Measure Time: " + cmd.getOptionValue("measure"));
+                return null;
+            }
+
+            if (measureTime <= 0) {
+                System.err.println("Invalid Measure Time: " + cmd.getOptionValue("measure"));
+                return null;
+            }
+
+            builder.measureTime(measureTime);
+        }
+
+        // placement
+        if (cmd.hasOption("place")) {
+            try {
+                builder.placement(Placement.fromName(cmd.getOptionValue("place")));
+            } catch (IllegalArgumentException e) {
+                System.err.println("Invalid Placement: " + cmd.getOptionValue("place"));
+                return null;
+            }
+        }
+
+        // profile
+        builder.profile(cmd.hasOption("prof"));
+
+        // sweep-workers
+        if (cmd.hasOption("workers")) {
+            int workers;
+
+            try {
+                workers = Integer.parseInt(cmd.getOptionValue("workers"));
+            } catch (NumberFormatException e) {
+                System.err.println("Invalid Sweep Workers: " + cmd.getOptionValue("workers"));
+                return null;
+            }
+
+            if (workers <= 0) {
+                System.err.println("Invalid Sweep Workers: " + cmd.getOptionValue("workers"));
+                return null;
+            }
+
+            builder.sweepWorkers(workers);
+        }
+
         // output-dir
         if (cmd.hasOption("out")) {
             builder.outputDirectory(cmd.getOptionValue("out"));
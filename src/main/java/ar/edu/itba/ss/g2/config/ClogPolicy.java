@@ -0,0 +1,25 @@
+package ar.edu.itba.ss.g2.config;
+
+public enum ClogPolicy {
+    ABORT("abort"),
+    PERTURB("perturb");
+
+    private final String name;
+
+    ClogPolicy(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public static ClogPolicy fromName(String name) {
+        for (ClogPolicy policy : values()) {
+            if (policy.name.equals(name)) {
+                return policy;
+            }
+        }
+        throw new IllegalArgumentException("Unknown clog policy: " + name);
+    }
+}
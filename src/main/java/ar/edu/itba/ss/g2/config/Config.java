@@ -1,5 +1,6 @@
 package ar.edu.itba.ss.g2.config;
 
+import java.util.List;
 import java.util.Random;
 
 public class Config {
@@ -27,6 +28,42 @@ public class Config {
     private final double integrationStep; // dt
     private final double snapshotStep; // dt2
     private final double maxTime; // tf
+    private final boolean adaptiveStep; // adaptive-step
+    private final double minIntegrationStep; // dtmin
+    private final double maxIntegrationStep; // dtmax
+
+    // Integrador
+    private final IntegratorType integrator; // integrator
+    private final boolean compareIntegrators; // compare-integrators
+
+    // Vecinos
+    private final double skin; // skin
+
+    // Hilos para las fuerzas
+    private final int threads; // threads
+    private final ForceKernel forceKernel; // force-kernel
+    private final boolean comparePrecision; // compare-precision
+    private final SnapshotFormat snapshotFormat; // snapshot-format
+    private final int snapshotPrecision; // snapshot-precision, bits per coordinate
+    private final double snapshotTolerance; // snapshot-tolerance
+    private final int keyframeInterval; // keyframe-interval
+    private final int sweepWorkers; // sweep-workers
+    private final double flowWindow; // flow-window
+    private final boolean saveSnapshots; // !no-snapshots
+    private final double targetConfidence; // target-confidence
+    private final long stopDischarges; // stop-discharges
+    private final double clogInterval; // clog-interval
+    private final double clogEnergy; // clog-energy
+    private final ClogPolicy clogPolicy; // clog-policy
+    private final double checkpointInterval; // checkpoint-interval
+    private final double checkpointWallInterval; // checkpoint-wall-interval, seconds
+    private final boolean resume; // resume
+    // Accelerations stepped through after max-time, empty for a single run
+    private final List<Double> continuation; // continuation
+    private final double settleTime; // settle-time
+    private final double measureTime; // measure-time
+    private final Placement placement; // placement
+    private final boolean profile; // profile
 
     // Output
     private final String outputDirectory; // out
@@ -90,6 +127,122 @@ public class Config {
         return maxTime;
     }
 
+    public boolean isAdaptiveStep() {
+        return adaptiveStep;
+    }
+
+    public double getMinIntegrationStep() {
+        return minIntegrationStep;
+    }
+
+    public double getMaxIntegrationStep() {
+        return maxIntegrationStep;
+    }
+
+    public IntegratorType getIntegrator() {
+        return integrator;
+    }
+
+    public boolean isCompareIntegrators() {
+        return compareIntegrators;
+    }
+
+    public double getSkin() {
+        return skin;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public ForceKernel getForceKernel() {
+        return forceKernel;
+    }
+
+    public boolean isComparePrecision() {
+        return comparePrecision;
+    }
+
+    public SnapshotFormat getSnapshotFormat() {
+        return snapshotFormat;
+    }
+
+    public int getSnapshotPrecision() {
+        return snapshotPrecision;
+    }
+
+    public double getSnapshotTolerance() {
+        return snapshotTolerance;
+    }
+
+    public int getKeyframeInterval() {
+        return keyframeInterval;
+    }
+
+    public int getSweepWorkers() {
+        return sweepWorkers;
+    }
+
+    public double getFlowWindow() {
+        return flowWindow;
+    }
+
+    public boolean isSaveSnapshots() {
+        return saveSnapshots;
+    }
+
+    public double getTargetConfidence() {
+        return targetConfidence;
+    }
+
+    public long getStopDischarges() {
+        return stopDischarges;
+    }
+
+    public double getClogInterval() {
+        return clogInterval;
+    }
+
+    public double getClogEnergy() {
+        return clogEnergy;
+    }
+
+    public ClogPolicy getClogPolicy() {
+        return clogPolicy;
+    }
+
+    public double getCheckpointInterval() {
+        return checkpointInterval;
+    }
+
+    public double getCheckpointWallInterval() {
+        return checkpointWallInterval;
+    }
+
+    public boolean isResume() {
+        return resume;
+    }
+
+    public List<Double> getContinuation() {
+        return continuation;
+    }
+
+    public double getSettleTime() {
+        return settleTime;
+    }
+
+    public double getMeasureTime() {
+        return measureTime;
+    }
+
+    public Placement getPlacement() {
+        return placement;
+    }
+
+    public boolean isProfile() {
+        return profile;
+    }
+
     public String getOutputDirectory() {
         return outputDirectory;
     }
@@ -113,6 +266,41 @@ public class Config {
         this.integrationStep = builder.integrationStep;
         this.snapshotStep = builder.snapshotStep;
         this.maxTime = builder.maxTime;
+        this.adaptiveStep = builder.adaptiveStep;
+        this.minIntegrationStep =
+                Double.isNaN(builder.minIntegrationStep)
+                        ? builder.integrationStep / 100
+                        : builder.minIntegrationStep;
+        this.maxIntegrationStep =
+                Double.isNaN(builder.maxIntegrationStep)
+                        ? builder.integrationStep
+                        : builder.maxIntegrationStep;
+        this.integrator = builder.integrator;
+        this.compareIntegrators = builder.compareIntegrators;
+        this.skin = builder.skin;
+        this.threads = builder.threads;
+        this.forceKernel = builder.forceKernel;
+        this.comparePrecision = builder.comparePrecision;
+        this.snapshotFormat = builder.snapshotFormat;
+        this.snapshotPrecision = builder.snapshotPrecision;
+        this.snapshotTolerance = builder.snapshotTolerance;
+        this.keyframeInterval = builder.keyframeInterval;
+        this.sweepWorkers = builder.sweepWorkers;
+        this.flowWindow = builder.flowWindow;
+        this.saveSnapshots = builder.saveSnapshots;
+        this.targetConfidence = builder.targetConfidence;
+        this.stopDischarges = builder.stopDischarges;
+        this.clogInterval = builder.clogInterval;
+        this.clogEnergy = builder.clogEnergy;
+        this.clogPolicy = builder.clogPolicy;
+        this.checkpointInterval = builder.checkpointInterval;
+        this.checkpointWallInterval = builder.checkpointWallInterval;
+        this.resume = builder.resume;
+        this.continuation = List.copyOf(builder.continuation);
+        this.settleTime = builder.settleTime;
+        this.measureTime = builder.measureTime;
+        this.placement = builder.placement;
+        this.profile = builder.profile;
         this.outputDirectory = builder.outputDirectory;
         this.seed = builder.seed;
     }
@@ -132,10 +320,90 @@ public class Config {
         private double integrationStep;
         private double snapshotStep;
         private double maxTime;
+        private boolean adaptiveStep = false;
+        private double minIntegrationStep = Double.NaN; // dt / 100
+        private double maxIntegrationStep = Double.NaN; // dt
+        private IntegratorType integrator = IntegratorType.BEEMAN;
+        private boolean compareIntegrators = false;
+        private double skin = 0;
+        private int threads = 1;
+        private ForceKernel forceKernel = ForceKernel.SCALAR;
+        private boolean comparePrecision = false;
+        private SnapshotFormat snapshotFormat = SnapshotFormat.TEXT;
+        private int snapshotPrecision = 64;
+        private double snapshotTolerance = 1e-5;
+        private int keyframeInterval = 100;
+        private int sweepWorkers = Runtime.getRuntime().availableProcessors();
+        private double flowWindow = 10.0;
+        private boolean saveSnapshots = true;
+        private double targetConfidence = 0;
+        private long stopDischarges = 0;
+        private double clogInterval = 0;
+        private double clogEnergy = 1e-3;
+        private ClogPolicy clogPolicy = ClogPolicy.ABORT;
+        private double checkpointInterval = 0;
+        private double checkpointWallInterval = 0;
+        private boolean resume = false;
+        private List<Double> continuation = List.of();
+        private double settleTime = 10.0;
+        private double measureTime = 50.0;
+        private Placement placement = Placement.RANDOM;
+        private boolean profile = false;
         private String outputDirectory;
 
         private long seed = new Random().nextLong();
 
+        public Builder() {}
+
+        // Starts from the values of an existing configuration
+        public Builder(Config config) {
+            this.width = config.width;
+            this.length = config.length;
+            this.obstacleCount = config.obstacleCount;
+            this.particleCount = config.particleCount;
+            this.obstacleRadius = config.obstacleRadius;
+            this.particleRadius = config.particleRadius;
+            this.particleMass = config.particleMass;
+            this.acceleration = config.acceleration;
+            this.normalK = config.normalK;
+            this.gamma = config.gamma;
+            this.tangentialK = config.tangentialK;
+            this.integrationStep = config.integrationStep;
+            this.snapshotStep = config.snapshotStep;
+            this.maxTime = config.maxTime;
+            this.adaptiveStep = config.adaptiveStep;
+            this.minIntegrationStep = config.minIntegrationStep;
+            this.maxIntegrationStep = config.maxIntegrationStep;
+            this.integrator = config.integrator;
+            this.compareIntegrators = config.compareIntegrators;
+            this.skin = config.skin;
+            this.threads = config.threads;
+            this.forceKernel = config.forceKernel;
+            this.comparePrecision = config.comparePrecision;
+            this.snapshotFormat = config.snapshotFormat;
+            this.snapshotPrecision = config.snapshotPrecision;
+            this.snapshotTolerance = config.snapshotTolerance;
+            this.keyframeInterval = config.keyframeInterval;
+            this.sweepWorkers = config.sweepWorkers;
+            this.flowWindow = config.flowWindow;
+            this.saveSnapshots = config.saveSnapshots;
+            this.targetConfidence = config.targetConfidence;
+            this.stopDischarges = config.stopDischarges;
+            this.clogInterval = config.clogInterval;
+            this.clogEnergy = config.clogEnergy;
+            this.clogPolicy = config.clogPolicy;
+            this.checkpointInterval = config.checkpointInterval;
+            this.checkpointWallInterval = config.checkpointWallInterval;
+            this.resume = config.resume;
+            this.continuation = config.continuation;
+            this.settleTime = config.settleTime;
+            this.measureTime = config.measureTime;
+            this.placement = config.placement;
+            this.profile = config.profile;
+            this.outputDirectory = config.outputDirectory;
+            this.seed = config.seed;
+        }
+
         public Builder width(double width) {
             this.width = width;
             return this;
@@ -206,6 +474,151 @@ public class Config {
             return this;
         }
 
+        public Builder adaptiveStep(boolean adaptiveStep) {
+            this.adaptiveStep = adaptiveStep;
+            return this;
+        }
+
+        public Builder minIntegrationStep(double minIntegrationStep) {
+            this.minIntegrationStep = minIntegrationStep;
+            return this;
+        }
+
+        public Builder maxIntegrationStep(double maxIntegrationStep) {
+            this.maxIntegrationStep = maxIntegrationStep;
+            return this;
+        }
+
+        public Builder integrator(IntegratorType integrator) {
+            this.integrator = integrator;
+            return this;
+        }
+
+        public Builder compareIntegrators(boolean compareIntegrators) {
+            this.compareIntegrators = compareIntegrators;
+            return this;
+        }
+
+        public Builder skin(double skin) {
+            this.skin = skin;
+            return this;
+        }
+
+        public Builder threads(int threads) {
+            this.threads = threads;
+            return this;
+        }
+
+        public Builder forceKernel(ForceKernel forceKernel) {
+            this.forceKernel = forceKernel;
+            return this;
+        }
+
+        public Builder comparePrecision(boolean comparePrecision) {
+            this.comparePrecision = comparePrecision;
+            return this;
+        }
+
+        public Builder snapshotFormat(SnapshotFormat snapshotFormat) {
+            this.snapshotFormat = snapshotFormat;
+            return this;
+        }
+
+        public Builder snapshotPrecision(int snapshotPrecision) {
+            this.snapshotPrecision = snapshotPrecision;
+            return this;
+        }
+
+        public Builder snapshotTolerance(double snapshotTolerance) {
+            this.snapshotTolerance = snapshotTolerance;
+            return this;
+        }
+
+        public Builder keyframeInterval(int keyframeInterval) {
+            this.keyframeInterval = keyframeInterval;
+            return this;
+        }
+
+        public Builder sweepWorkers(int sweepWorkers) {
+            this.sweepWorkers = sweepWorkers;
+            return this;
+        }
+
+        public Builder flowWindow(double flowWindow) {
+            this.flowWindow = flowWindow;
+            return this;
+        }
+
+        public Builder saveSnapshots(boolean saveSnapshots) {
+            this.saveSnapshots = saveSnapshots;
+            return this;
+        }
+
+        public Builder targetConfidence(double targetConfidence) {
+            this.targetConfidence = targetConfidence;
+            return this;
+        }
+
+        public Builder stopDischarges(long stopDischarges) {
+            this.stopDischarges = stopDischarges;
+            return this;
+        }
+
+        public Builder clogInterval(double clogInterval) {
+            this.clogInterval = clogInterval;
+            return this;
+        }
+
+        public Builder clogEnergy(double clogEnergy) {
+            this.clogEnergy = clogEnergy;
+            return this;
+        }
+
+        public Builder clogPolicy(ClogPolicy clogPolicy) {
+            this.clogPolicy = clogPolicy;
+            return this;
+        }
+
+        public Builder checkpointInterval(double checkpointInterval) {
+            this.checkpointInterval = checkpointInterval;
+            return this;
+        }
+
+        public Builder checkpointWallInterval(double checkpointWallInterval) {
+            this.checkpointWallInterval = checkpointWallInterval;
+            return this;
+        }
+
+        public Builder resume(boolean resume) {
+            this.resume = resume;
+            return this;
+        }
+
+        public Builder continuation(List<Double> continuation) {
+            this.continuation = continuation;
+            return this;
+        }
+
+        public Builder settleTime(double settleTime) {
+            this.settleTime = settleTime;
+            return this;
+        }
+
+        public Builder measureTime(double measureTime) {
+            this.measureTime = measureTime;
+            return this;
+        }
+
+        public Builder placement(Placement placement) {
+            this.placement = placement;
+            return this;
+        }
+
+        public Builder profile(boolean profile) {
+            this.profile = profile;
+            return this;
+        }
+
         public Builder outputDirectory(String outputDirectory) {
             this.outputDirectory = outputDirectory;
             return this;
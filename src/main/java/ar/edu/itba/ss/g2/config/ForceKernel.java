@@ -0,0 +1,25 @@
+package ar.edu.itba.ss.g2.config;
+
+public enum ForceKernel {
+    SCALAR("scalar"),
+    VECTOR("vector");
+
+    private final String name;
+
+    ForceKernel(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public static ForceKernel fromName(String name) {
+        for (ForceKernel type : values()) {
+            if (type.name.equals(name)) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("Unknown force kernel: " + name);
+    }
+}
@@ -0,0 +1,25 @@
+package ar.edu.itba.ss.g2.config;
+
+public enum IntegratorType {
+    BEEMAN("beeman"),
+    VELOCITY_VERLET("velocity-verlet");
+
+    private final String name;
+
+    IntegratorType(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public static IntegratorType fromName(String name) {
+        for (IntegratorType type : values()) {
+            if (type.name.equals(name)) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("Unknown integrator: " + name);
+    }
+}
@@ -0,0 +1,25 @@
+package ar.edu.itba.ss.g2.config;
+
+public enum Placement {
+    RANDOM("random"),
+    LATTICE("lattice");
+
+    private final String name;
+
+    Placement(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public static Placement fromName(String name) {
+        for (Placement type : values()) {
+            if (type.name.equals(name)) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("Unknown placement: " + name);
+    }
+}
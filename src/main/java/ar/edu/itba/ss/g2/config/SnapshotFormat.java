@@ -0,0 +1,26 @@
+package ar.edu.itba.ss.g2.config;
+
+public enum SnapshotFormat {
+    TEXT("text"),
+    BINARY("binary"),
+    COMPRESSED("compressed");
+
+    private final String name;
+
+    SnapshotFormat(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public static SnapshotFormat fromName(String name) {
+        for (SnapshotFormat format : values()) {
+            if (format.name.equals(name)) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("Unknown snapshot format: " + name);
+    }
+}
@@ -0,0 +1,25 @@
+package ar.edu.itba.ss.g2.config;
+
+public enum StatePrecision {
+    DOUBLE("double"),
+    FLOAT("float");
+
+    private final String name;
+
+    StatePrecision(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public static StatePrecision fromName(String name) {
+        for (StatePrecision type : values()) {
+            if (type.name.equals(name)) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("Unknown state precision: " + name);
+    }
+}
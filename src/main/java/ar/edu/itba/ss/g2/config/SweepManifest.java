@@ -0,0 +1,106 @@
+package ar.edu.itba.ss.g2.config;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Parameter grid of a sweep. Each line is the long name of an option and the
+// comma separated values it takes, every combination is a run:
+//
+//   # 3 accelerations x 2 obstacle counts x 5 seeds = 30 runs
+//   acceleration = 0.5, 1, 1.5
+//   obstacle-count = 40, 80
+//   seed = 1, 2, 3, 4, 5
+//
+// Flags take true or false. Options not in the manifest come from the
+// command line.
+public class SweepManifest {
+
+    private final List<String> keys;
+    private final List<List<String>> values;
+
+    private SweepManifest(List<String> keys, List<List<String>> values) {
+        this.keys = keys;
+        this.values = values;
+    }
+
+    public static SweepManifest read(Path file) throws IOException {
+        List<String> keys = new ArrayList<>();
+        List<List<String>> values = new ArrayList<>();
+
+        int lineNumber = 0;
+        for (String line : Files.readAllLines(file)) {
+            lineNumber++;
+
+            line = line.strip();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+
+            int separator = line.indexOf('=');
+            if (separator <= 0) {
+                throw new IOException("Invalid sweep line " + lineNumber + ": " + line);
+            }
+
+            String key = line.substring(0, separator).strip();
+            List<String> keyValues = new ArrayList<>();
+            for (String value : line.substring(separator + 1).split(",")) {
+                if (!value.isBlank()) {
+                    keyValues.add(value.strip());
+                }
+            }
+
+            if (keyValues.isEmpty() || keys.contains(key)) {
+                throw new IOException("Invalid sweep line " + lineNumber + ": " + line);
+            }
+
+            keys.add(key);
+            values.add(keyValues);
+        }
+
+        return new SweepManifest(keys, values);
+    }
+
+    // Every combination of values, the last key varies fastest
+    public List<Map<String, String>> getRuns() {
+        List<Map<String, String>> runs = new ArrayList<>();
+        runs.add(new LinkedHashMap<>());
+
+        for (int k = 0; k < keys.size(); k++) {
+            List<Map<String, String>> expanded = new ArrayList<>();
+            for (Map<String, String> run : runs) {
+                for (String value : values.get(k)) {
+                    Map<String, String> next = new LinkedHashMap<>(run);
+                    next.put(keys.get(k), value);
+                    expanded.add(next);
+                }
+            }
+            runs = expanded;
+        }
+
+        return runs;
+    }
+
+    // Command line of a run: its values go first so they take precedence over
+    // the same options in args
+    public static String[] toArgs(Map<String, String> run, String[] args) {
+        List<String> runArgs = new ArrayList<>();
+
+        for (Map.Entry<String, String> entry : run.entrySet()) {
+            if (entry.getValue().equals("false")) {
+                continue;
+            }
+            runArgs.add("--" + entry.getKey());
+            if (!entry.getValue().equals("true")) {
+                runArgs.add(entry.getValue());
+            }
+        }
+
+        runArgs.addAll(List.of(args));
+        return runArgs.toArray(new String[0]);
+    }
+}
@@ -0,0 +1,131 @@
+package ar.edu.itba.ss.g2.generation;
+
+import ar.edu.itba.ss.g2.model.Particle;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+// Places the particles on a triangular lattice around the obstacles instead
+// of drawing positions until they fit, so it reaches packing fractions close
+// to the ~0.9 of the lattice where rejection sampling never finishes.
+//
+// The lattice spacing is the largest that leaves enough free sites, the
+// particles take a random subset of them and each is moved a random distance
+// up to half the gap between neighbours, which can't create an overlap.
+public class LatticeParticleGenerator {
+
+    private static final int SPACING_ITERATIONS = 40;
+
+    private final double width;
+    private final double length;
+    private final int particleCount;
+    private final double particleRadius;
+    private final double particleMass;
+    private final double initialAcceleration;
+
+    private final List<Particle> obstacles;
+
+    private final Random random;
+
+    public LatticeParticleGenerator(
+            double width,
+            double length,
+            int particleCount,
+            double particleRadius,
+            double particleMass,
+            double initialAcceleration,
+            List<Particle> obstacles,
+            Random random) {
+        this.width = width;
+        this.length = length;
+        this.particleCount = particleCount;
+        this.particleRadius = particleRadius;
+        this.particleMass = particleMass;
+        this.initialAcceleration = initialAcceleration;
+        this.obstacles = obstacles;
+        this.random = random;
+    }
+
+    public List<Particle> generate() {
+        // Bisection over the spacing, the number of sites shrinks as it grows
+        double diameter = 2 * particleRadius;
+        double low = diameter;
+        double high = Math.max(length, width);
+
+        if (sites(low).size() < particleCount) {
+            throw new IllegalStateException("Could not fit the particles on a lattice");
+        }
+
+        for (int k = 0; k < SPACING_ITERATIONS; k++) {
+            double spacing = (low + high) / 2;
+            if (sites(spacing).size() >= particleCount) {
+                low = spacing;
+            } else {
+                high = spacing;
+            }
+        }
+
+        double spacing = low;
+        double jitter = (spacing - diameter) / 2;
+
+        List<double[]> sites = sites(spacing);
+        Collections.shuffle(sites, random);
+
+        List<Particle> particles = new ArrayList<>(particleCount);
+        for (int i = 0; i < particleCount; i++) {
+            double[] site = sites.get(i);
+
+            // Uniform in the disk of radius jitter
+            double distance = jitter * Math.sqrt(random.nextDouble());
+            double angle = 2 * Math.PI * random.nextDouble();
+
+            particles.add(
+                    new Particle(
+                            i + obstacles.size(),
+                            site[0] + distance * Math.cos(angle),
+                            0.0,
+                            initialAcceleration,
+                            site[1] + distance * Math.sin(angle),
+                            0.0,
+                            0.0,
+                            particleMass,
+                            particleRadius));
+        }
+
+        return particles;
+    }
+
+    // Free sites of a triangular lattice with the given spacing, far enough
+    // from the walls and obstacles for a particle to move up to the jitter
+    private List<double[]> sites(double spacing) {
+        double jitter = (spacing - 2 * particleRadius) / 2;
+        double margin = particleRadius + jitter;
+        double rowHeight = spacing * Math.sqrt(3) / 2;
+
+        // Obstacles are tested against a particle of radius margin
+        double maxRadius = margin;
+        for (Particle obstacle : obstacles) {
+            maxRadius = Math.max(maxRadius, obstacle.getRadius());
+        }
+        PlacementGrid grid = new PlacementGrid(length, width, maxRadius);
+        obstacles.forEach(grid::add);
+
+        List<double[]> sites = new ArrayList<>();
+
+        for (int row = 0; margin + row * rowHeight <= width - margin; row++) {
+            double y = margin + row * rowHeight;
+            double offset = row % 2 == 0 ? 0 : spacing / 2;
+
+            for (int column = 0; margin + offset + column * spacing <= length - margin; column++) {
+                double x = margin + offset + column * spacing;
+                if (!grid.overlaps(x, y, margin)) {
+                    sites.add(new double[] {x, y});
+                }
+            }
+        }
+
+        return sites;
+    }
+}
@@ -33,6 +33,7 @@ public class ObstacleGenerator {
 
     public List<Particle> generate() {
         List<Particle> obstacles = new ArrayList<>(obstacleCount);
+        PlacementGrid grid = new PlacementGrid(length, width, obstacleRadius);
 
         for (int i = 0, tries = 0; i < obstacleCount; i++, tries++) {
 
@@ -43,6 +44,10 @@ public class ObstacleGenerator {
             double x = random.nextDouble() * (length - 2 * obstacleRadius) + obstacleRadius;
             double y = random.nextDouble() * (width - 2 * obstacleRadius) + obstacleRadius;
 
+            if (grid.overlaps(x, y, obstacleRadius)) {
+                i--;
+                continue;
+            }
 
             Particle particle =
                     new Particle(
@@ -56,14 +61,8 @@ public class ObstacleGenerator {
                             0.0,
                             obstacleRadius);
 
-            boolean overlapsObstacle = obstacles.stream().anyMatch(o -> o.overlaps(particle));
-
-            if (overlapsObstacle) {
-                i--;
-                continue;
-            }
-
             obstacles.add(particle);
+            grid.add(particle);
         }
 
         return obstacles;
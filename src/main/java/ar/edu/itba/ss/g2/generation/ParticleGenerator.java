@@ -43,6 +43,14 @@ public class ParticleGenerator {
     public List<Particle> generate() {
         List<Particle> particles = new ArrayList<>(particleCount);
 
+        // Obstacles and particles share the grid
+        double maxRadius = particleRadius;
+        for (Particle obstacle : obstacles) {
+            maxRadius = Math.max(maxRadius, obstacle.getRadius());
+        }
+        PlacementGrid grid = new PlacementGrid(length, width, maxRadius);
+        obstacles.forEach(grid::add);
+
         for (int i = 0, tries = 0; i < particleCount; i++, tries++) {
 
             if (tries > MAX_TRIES) {
@@ -52,6 +60,11 @@ public class ParticleGenerator {
             double x = random.nextDouble() * (length - 2 * particleRadius) + particleRadius;
             double y = random.nextDouble() * (width - 2 * particleRadius) + particleRadius;
 
+            if (grid.overlaps(x, y, particleRadius)) {
+                i--;
+                continue;
+            }
+
             double ax = initialAcceleration;
 
             Particle particle =
@@ -66,15 +79,8 @@ public class ParticleGenerator {
                             particleMass,
                             particleRadius);
 
-            boolean overlapsParticle = particles.stream().anyMatch(p -> p.overlaps(particle));
-            boolean overlapsObstacle = obstacles.stream().anyMatch(o -> o.overlaps(particle));
-
-            if (overlapsObstacle || overlapsParticle) {
-                i--;
-                continue;
-            }
-
             particles.add(particle);
+            grid.add(particle);
         }
 
         return particles;
@@ -0,0 +1,85 @@
+package ar.edu.itba.ss.g2.generation;
+
+import ar.edu.itba.ss.g2.model.Particle;
+
+import java.util.Arrays;
+
+// Bodies placed so far, bucketed in square cells at least as large as the
+// largest sum of two radii, so a candidate only has to be checked against
+// the bodies in its cell and the 8 around it. Accepts exactly the same
+// candidates as testing Particle.overlaps against every body.
+class PlacementGrid {
+
+    private final int Mx;
+    private final int My;
+    private final double cellSize;
+
+    // Bodies of cell c: cellHead[c], next[cellHead[c]], ... until -1
+    private final int[] cellHead;
+    private int[] next;
+
+    private double[] x;
+    private double[] y;
+    private double[] radius;
+    private int count;
+
+    // maxRadius: largest radius of anything added or tested
+    PlacementGrid(double length, double width, double maxRadius) {
+        this.cellSize = Math.max(2 * maxRadius, Double.MIN_NORMAL);
+        this.Mx = (int) Math.max(1, Math.min(Math.floor(length / cellSize), 1 << 14));
+        this.My = (int) Math.max(1, Math.min(Math.floor(width / cellSize), 1 << 14));
+
+        this.cellHead = new int[Mx * My];
+        Arrays.fill(cellHead, -1);
+
+        this.next = new int[64];
+        this.x = new double[64];
+        this.y = new double[64];
+        this.radius = new double[64];
+    }
+
+    void add(Particle particle) {
+        if (count == x.length) {
+            next = Arrays.copyOf(next, 2 * count);
+            x = Arrays.copyOf(x, 2 * count);
+            y = Arrays.copyOf(y, 2 * count);
+            radius = Arrays.copyOf(radius, 2 * count);
+        }
+
+        x[count] = particle.getX();
+        y[count] = particle.getY();
+        radius[count] = particle.getRadius();
+
+        int cell = cellX(x[count]) * My + cellY(y[count]);
+        next[count] = cellHead[cell];
+        cellHead[cell] = count;
+        count++;
+    }
+
+    // Same test as Particle.overlaps
+    boolean overlaps(double px, double py, double pradius) {
+        int cx = cellX(px);
+        int cy = cellY(py);
+
+        for (int nx = Math.max(0, cx - 1); nx <= Math.min(Mx - 1, cx + 1); nx++) {
+            for (int ny = Math.max(0, cy - 1); ny <= Math.min(My - 1, cy + 1); ny++) {
+                for (int k = cellHead[nx * My + ny]; k >= 0; k = next[k]) {
+                    double distance = Math.sqrt(Math.pow(x[k] - px, 2) + Math.pow(y[k] - py, 2));
+                    if (distance < radius[k] + pradius) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    // Cells are cellSize wide, the last one takes the remainder
+    private int cellX(double px) {
+        return Math.min(Mx - 1, Math.max(0, (int) (px / cellSize)));
+    }
+
+    private int cellY(double py) {
+        return Math.min(My - 1, Math.max(0, (int) (py / cellSize)));
+    }
+}
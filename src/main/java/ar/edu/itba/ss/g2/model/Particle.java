@@ -3,25 +3,25 @@ package ar.edu.itba.ss.g2.model;
 public class Particle {
     private int id;
 
-    private Double x;
-    private Double vx;
-    private Double ax;
+    private double x;
+    private double vx;
+    private double ax;
 
-    private Double y;
+    private double y;
 
-    private final Double mass;
-    private final Double radius;
+    private final double mass;
+    private final double radius;
 
     public Particle(
             int id,
-            Double x,
-            Double vx,
-            Double ax,
-            Double y,
-            Double vy,
-            Double ay,
-            Double mass,
-            Double radius) {
+            double x,
+            double vx,
+            double ax,
+            double y,
+            double vy,
+            double ay,
+            double mass,
+            double radius) {
         this.id = id;
         this.x = x;
         this.vx = vx;
@@ -49,63 +49,63 @@ public class Particle {
         return id;
     }
 
-    public Double getX() {
+    public double getX() {
         return x;
     }
 
-    public Double getVx() {
+    public double getVx() {
         return vx;
     }
 
-    public Double getAx() {
+    public double getAx() {
         return ax;
     }
 
-    public Double getMass() {
+    public double getMass() {
         return mass;
     }
 
-    public void setX(Double x) {
+    public void setX(double x) {
         this.x = x;
     }
 
-    public void setVx(Double vx) {
+    public void setVx(double vx) {
         this.vx = vx;
     }
 
-    public void setAx(Double ax) {
+    public void setAx(double ax) {
         this.ax = ax;
     }
 
-    public Double getY() {
+    public double getY() {
         return y;
     }
 
-    public void setY(Double y) {
+    public void setY(double y) {
         this.y = y;
     }
 
-    private Double vy;
+    private double vy;
 
-    public Double getVy() {
+    public double getVy() {
         return vy;
     }
 
-    public void setVy(Double vy) {
+    public void setVy(double vy) {
         this.vy = vy;
     }
 
-    private Double ay;
+    private double ay;
 
-    public Double getAy() {
+    public double getAy() {
         return ay;
     }
 
-    public void setAy(Double ay) {
+    public void setAy(double ay) {
         this.ay = ay;
     }
 
-    public Double getRadius() {
+    public double getRadius() {
         return radius;
     }
 
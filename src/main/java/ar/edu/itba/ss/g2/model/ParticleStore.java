@@ -0,0 +1,107 @@
+package ar.edu.itba.ss.g2.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Structure of arrays with the state of every body in the simulation.
+// Obstacles occupy indices [0, obstacleCount) and mobile particles
+// [obstacleCount, size), so the index of a body matches its Particle id.
+public class ParticleStore {
+
+    private final int obstacleCount;
+    private final int size;
+
+    private final int[] ids;
+
+    private final double[] x;
+    private final double[] y;
+    private final double[] vx;
+    private final double[] vy;
+    private final double[] mass;
+    private final double[] radius;
+
+    public ParticleStore(List<Particle> obstacles, List<Particle> particles) {
+        this.obstacleCount = obstacles.size();
+        this.size = obstacles.size() + particles.size();
+
+        this.ids = new int[size];
+        this.x = new double[size];
+        this.y = new double[size];
+        this.vx = new double[size];
+        this.vy = new double[size];
+        this.mass = new double[size];
+        this.radius = new double[size];
+
+        for (int i = 0; i < obstacleCount; i++) {
+            set(i, obstacles.get(i));
+        }
+
+        for (int i = obstacleCount; i < size; i++) {
+            set(i, particles.get(i - obstacleCount));
+        }
+    }
+
+    private void set(int i, Particle particle) {
+        ids[i] = particle.getId();
+        x[i] = particle.getX();
+        y[i] = particle.getY();
+        vx[i] = particle.getVx();
+        vy[i] = particle.getVy();
+        mass[i] = particle.getMass();
+        radius[i] = particle.getRadius();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getObstacleCount() {
+        return obstacleCount;
+    }
+
+    public int getParticleCount() {
+        return size - obstacleCount;
+    }
+
+    // Index of the first mobile particle
+    public int getFirstParticle() {
+        return obstacleCount;
+    }
+
+    public double[] getX() {
+        return x;
+    }
+
+    public double[] getY() {
+        return y;
+    }
+
+    public double[] getVx() {
+        return vx;
+    }
+
+    public double[] getVy() {
+        return vy;
+    }
+
+    public double[] getMass() {
+        return mass;
+    }
+
+    public double[] getRadius() {
+        return radius;
+    }
+
+    public Particle toParticle(int i) {
+        return new Particle(ids[i], x[i], vx[i], 0.0, y[i], vy[i], 0.0, mass[i], radius[i]);
+    }
+
+    // Copies the mobile particles back into Particle objects
+    public List<Particle> toParticles() {
+        List<Particle> particles = new ArrayList<>(size - obstacleCount);
+        for (int i = obstacleCount; i < size; i++) {
+            particles.add(toParticle(i));
+        }
+        return particles;
+    }
+}
@@ -0,0 +1,47 @@
+package ar.edu.itba.ss.g2.simulation;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+// Mean of the flow rates of non-overlapping windows and its standard error
+// from their variance, with Welford so it takes constant memory
+class BatchMeans {
+
+    private long batches;
+    private double mean;
+    private double m2;
+
+    void add(double rate) {
+        batches++;
+        double delta = rate - mean;
+        mean += delta / batches;
+        m2 += delta * (rate - mean);
+    }
+
+    void writeState(DataOutput out) throws IOException {
+        out.writeLong(batches);
+        out.writeDouble(mean);
+        out.writeDouble(m2);
+    }
+
+    void readState(DataInput in) throws IOException {
+        batches = in.readLong();
+        mean = in.readDouble();
+        m2 = in.readDouble();
+    }
+
+    long getBatches() {
+        return batches;
+    }
+
+    // NaN without batches
+    double getMean() {
+        return batches > 0 ? mean : Double.NaN;
+    }
+
+    // NaN with less than two batches
+    double getStandardError() {
+        return batches > 1 ? Math.sqrt(m2 / (batches - 1) / batches) : Double.NaN;
+    }
+}
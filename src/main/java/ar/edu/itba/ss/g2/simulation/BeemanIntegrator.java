@@ -0,0 +1,211 @@
+package ar.edu.itba.ss.g2.simulation;
+
+import ar.edu.itba.ss.g2.model.ParticleStore;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+// Beeman predictor-corrector. The forces are evaluated twice per step: at the
+// predicted state for the correction and again with the corrected velocities.
+public class BeemanIntegrator implements Integrator {
+
+    private static final int X = 0;
+    private static final int Y = 1;
+
+    private final ParticleStore store;
+    private final ForceEngine forceEngine;
+
+    // Force ring buffer: F(t-dt), F(t) and F(t+dt) at the predicted state.
+    // First index x, second index y, indexed by particle - store.getFirstParticle()
+    private double[][] previousForces;
+    private double[][] currentForces;
+    private final double[][] nextForces;
+
+    // v(t) while the predictor overwrites the store with v(t+dt)
+    private final double[][] previousVelocities;
+
+    // Step that separates F(t-dt) from F(t)
+    private double previousStep;
+
+    public BeemanIntegrator(ParticleStore store, ForceEngine forceEngine) {
+        this.store = store;
+        this.forceEngine = forceEngine;
+
+        int count = store.getParticleCount();
+        this.previousForces = new double[2][count];
+        this.currentForces = new double[2][count];
+        this.nextForces = new double[2][count];
+        this.previousVelocities = new double[2][count];
+    }
+
+    @Override
+    public void initialize() {
+        // Initialize forces
+        // TODO: Fuerza anterior
+        forceEngine.calculate(previousForces);
+        forceEngine.calculate(currentForces);
+    }
+
+    @Override
+    public int getForceEvaluationsPerStep() {
+        return 2;
+    }
+
+    @Override
+    public void writeState(DataOutput out) throws IOException {
+        Checkpoint.writeArray(out, previousForces[X]);
+        Checkpoint.writeArray(out, previousForces[Y]);
+        Checkpoint.writeArray(out, currentForces[X]);
+        Checkpoint.writeArray(out, currentForces[Y]);
+        out.writeDouble(previousStep);
+    }
+
+    @Override
+    public void readState(DataInput in) throws IOException {
+        Checkpoint.readArray(in, previousForces[X]);
+        Checkpoint.readArray(in, previousForces[Y]);
+        Checkpoint.readArray(in, currentForces[X]);
+        Checkpoint.readArray(in, currentForces[Y]);
+        previousStep = in.readDouble();
+    }
+
+    @Override
+    public void step(double dt) {
+        int first = store.getFirstParticle();
+        int count = store.getParticleCount();
+
+        if (previousStep > 0 && dt != previousStep) {
+            rescaleHistory(dt / previousStep);
+        }
+        previousStep = dt;
+
+        double[] px = store.getX();
+        double[] py = store.getY();
+        double[] pvx = store.getVx();
+        double[] pvy = store.getVy();
+        double[] pmass = store.getMass();
+
+        double dt2 = dt * dt;
+
+        StepProfiler profiler = forceEngine.getProfiler();
+
+        // Positions
+        long start = profiler.start();
+        for (int k = 0; k < count; k++) {
+            int i = first + k;
+
+            double mass = pmass[i];
+
+            // r(t)
+            double currentX = px[i];
+            double currentY = py[i];
+
+            // v(t)
+            double currentVx = pvx[i];
+            double currentVy = pvy[i];
+
+            // a(t)
+            double currentAx = currentForces[X][k] / mass;
+            double currentAy = currentForces[Y][k] / mass;
+
+            // a(t-dt)
+            double previousAx = previousForces[X][k] / mass;
+            double previousAy = previousForces[Y][k] / mass;
+
+            // r(t+dt)
+            double nextX =
+                    currentX
+                            + currentVx * dt
+                            + (2.0 / 3.0) * currentAx * dt2
+                            - (1.0 / 6.0) * previousAx * dt2;
+
+            double nextY =
+                    currentY
+                            + currentVy * dt
+                            + (2.0 / 3.0) * currentAy * dt2
+                            - (1.0 / 6.0) * previousAy * dt2;
+
+            // predicted v(t+dt)
+            double predictedVx =
+                    currentVx
+                            + (3.0 / 2.0) * currentAx * dt
+                            - (1.0 / 2.0) * previousAx * dt;
+
+            double predictedVy =
+                    currentVy
+                            + (3.0 / 2.0) * currentAy * dt
+                            - (1.0 / 2.0) * previousAy * dt;
+
+            px[i] = nextX;
+            py[i] = nextY;
+
+            previousVelocities[X][k] = currentVx;
+            previousVelocities[Y][k] = currentVy;
+
+            pvx[i] = predictedVx;
+            pvy[i] = predictedVy;
+        }
+        profiler.stop(StepProfiler.Phase.PREDICTOR, start);
+
+        forceEngine.calculate(nextForces);
+
+        // Correct velocities
+        start = profiler.start();
+        for (int k = 0; k < count; k++) {
+            int i = first + k;
+
+            double mass = pmass[i];
+
+            // v(t)
+            double currentVx = previousVelocities[X][k];
+            double currentVy = previousVelocities[Y][k];
+
+            // a(t-dt), a(t), a(t+dt)
+            double previousAx = previousForces[X][k] / mass;
+            double currentAx = currentForces[X][k] / mass;
+            double nextAx = nextForces[X][k] / mass;
+
+            double previousAy = previousForces[Y][k] / mass;
+            double currentAy = currentForces[Y][k] / mass;
+            double nextAy = nextForces[Y][k] / mass;
+
+            // corrected v(t+dt)
+            double correctedVx =
+                    currentVx
+                            + (1.0 / 3.0) * nextAx * dt
+                            + (5.0 / 6.0) * currentAx * dt
+                            - (1.0 / 6.0) * previousAx * dt;
+
+            double correctedVy =
+                    currentVy
+                            + (1.0 / 3.0) * nextAy * dt
+                            + (5.0 / 6.0) * currentAy * dt
+                            - (1.0 / 6.0) * previousAy * dt;
+
+            pvx[i] = correctedVx;
+            pvy[i] = correctedVy;
+        }
+        profiler.stop(StepProfiler.Phase.CORRECTOR, start);
+
+        // Rotate the ring buffer, F(t-dt) is no longer needed
+        double[][] recycled = previousForces;
+        previousForces = currentForces;
+        currentForces = recycled;
+
+        // Recalculate forces as velocities have changed
+        forceEngine.calculate(currentForces);
+    }
+
+    // Beeman extrapolates the acceleration linearly from a(t-dt) and a(t).
+    // When the step changes, F(t-dt) is moved along that line to the new
+    // step so the extrapolation keeps the same slope.
+    private void rescaleHistory(double ratio) {
+        for (int k = 0; k < store.getParticleCount(); k++) {
+            previousForces[X][k] =
+                    currentForces[X][k] - (currentForces[X][k] - previousForces[X][k]) * ratio;
+            previousForces[Y][k] =
+                    currentForces[Y][k] - (currentForces[Y][k] - previousForces[Y][k]) * ratio;
+        }
+    }
+}
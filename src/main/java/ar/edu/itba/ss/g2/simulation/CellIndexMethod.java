@@ -1,42 +1,69 @@
 package ar.edu.itba.ss.g2.simulation;
 
-import ar.edu.itba.ss.g2.model.Particle;
+import ar.edu.itba.ss.g2.model.ParticleStore;
 
-import java.util.*;
+import java.util.Arrays;
 
 public class CellIndexMethod {
 
+    private static final int INITIAL_CAPACITY = 1024;
+
     private final int Mx;
     private final int My;
     private final double Lx;
     private final double Ly;
 
-    private final Set<Particle>[][] grid;
+    // Solo se guardan los pares a distancia menor a r_i + r_j + skin
+    private final double skin;
+
+    // Counting sort de las particulas moviles por celda: las de la celda c son
+    // cellParticles[cellStart[c]] ... cellParticles[cellStart[c + 1] - 1]
+    private final int[] cellStart;
+    private final int[] cellCursor;
+    private int[] cellOf;
+    private int[] cellParticles;
+
+    // Pares de vecinos (pairI[k], pairJ[k]), cada par aparece una sola vez
+    private int[] pairI;
+    private int[] pairJ;
+    private int pairCount;
 
+    // Pares (particula obstaclePairI[k], obstaculo obstaclePairJ[k])
+    private int[] obstaclePairI;
+    private int[] obstaclePairJ;
+    private int obstaclePairCount;
 
-    public CellIndexMethod(double length, double width, double  rc) {
+    private double[] px;
+    private double[] py;
+    private double[] pradius;
+
+    // rc tiene que ser al menos el doble del radio mas grande mas el skin
+    public CellIndexMethod(double length, double width, double  rc, double skin) {
         this.Lx = length;
         this.Ly = width;
+        this.skin = skin;
         this.Mx = (int) Math.max(1, Math.floor(Lx/rc));
         this.My = (int) Math.max(1, Math.floor(Ly/rc));
 
-        this.grid = new HashSet[Mx][My];
-
-        for (int i = 0; i < Mx; i++) {
-            for (int j = 0; j < My; j++) {
-                grid[i][j] = new HashSet<>();
-            }
-        }
+        this.cellStart = new int[Mx * My + 1];
+        this.cellCursor = new int[Mx * My];
+        this.cellOf = new int[0];
+        this.cellParticles = new int[0];
 
+        this.pairI = new int[INITIAL_CAPACITY];
+        this.pairJ = new int[INITIAL_CAPACITY];
+        this.obstaclePairI = new int[INITIAL_CAPACITY];
+        this.obstaclePairJ = new int[INITIAL_CAPACITY];
     }
 
-    public Map<Particle, Set<Particle>> getNeighbours(List<Particle> particles) {
-        Map<Particle, Set<Particle>> neighbours = new HashMap<>();
-        // inicio todas las particulas
-        particles.forEach(p -> neighbours.put(p, new HashSet<>()));
+    public void computeNeighbours(ParticleStore store, ObstacleIndex obstacleIndex) {
+        px = store.getX();
+        py = store.getY();
+        pradius = store.getRadius();
 
-        clearGrid();
-        updateGrid(particles);
+        updateGrid(store);
+
+        pairCount = 0;
 
         for (int x = 0; x < Mx; x++) {
             for (int y = 0; y < My; y++) {
@@ -45,51 +72,183 @@ public class CellIndexMethod {
                 // D E F
                 // G H I
                 // estoy parado en E.
-                Set<Particle> currentCellParticles = grid[x][y];
-                for (Particle p1 : currentCellParticles) {
-                    checkAdjacent(x, y, p1, neighbours);
-                    // me saco a mi mismo
-                    neighbours.get(p1).remove(p1);
-                }
+                checkAdjacent(x, y);
             }
         }
-        return neighbours;
+
+        checkObstacles(store, obstacleIndex);
+    }
+
+    public int getMx() {
+        return Mx;
+    }
+
+    public int getMy() {
+        return My;
+    }
+
+    public double getCellLength() {
+        return Lx / Mx;
+    }
+
+    public double getCellWidth() {
+        return Ly / My;
+    }
+
+    // Celda en la que quedo la particula i en el ultimo computeNeighbours
+    public int getCell(int i) {
+        return cellOf[i];
+    }
+
+    // Particles of the cells c0 ... c1 - 1 are cellParticles[getCellStart(c0)]
+    // ... cellParticles[getCellStart(c1) - 1]
+    public int getCellStart(int cell) {
+        return cellStart[cell];
+    }
+
+    public int[] getCellParticles() {
+        return cellParticles;
+    }
+
+    public int getPairCount() {
+        return pairCount;
+    }
+
+    public int[] getPairI() {
+        return pairI;
+    }
+
+    public int[] getPairJ() {
+        return pairJ;
+    }
+
+    public int getObstaclePairCount() {
+        return obstaclePairCount;
+    }
+
+    public int[] getObstaclePairI() {
+        return obstaclePairI;
+    }
+
+    public int[] getObstaclePairJ() {
+        return obstaclePairJ;
     }
 
     private static final int[][] NEIGHBOUR_OFFSETS = {
         {0, 0}, {-1, 0}, {-1, 1}, {0, 1}, {1, 1}
     };
-    
-    private void checkAdjacent(int x, int y, Particle p1, Map<Particle, Set<Particle>> neighbours) {
+
+    private void checkAdjacent(int x, int y) {
+        int cell = x * My + y;
+        int start = cellStart[cell];
+        int end = cellStart[cell + 1];
+
+        if (start == end) {
+            return;
+        }
+
         for (int[] offset : NEIGHBOUR_OFFSETS) {
             int nx = x + offset[0];
             int ny = y + offset[1];
             if (nx >= 0 && ny >= 0 && nx < Mx && ny < My) {
-                for (Particle p2 : grid[nx][ny]) {
-                    neighbours.get(p1).add(p2);
-                    neighbours.get(p2).add(p1);
+                int neighbourCell = nx * My + ny;
+                int neighbourEnd = cellStart[neighbourCell + 1];
+
+                for (int a = start; a < end; a++) {
+                    // en la misma celda solo miro las que vienen despues,
+                    // asi no me agrego a mi mismo ni repito pares
+                    int b = neighbourCell == cell ? a + 1 : cellStart[neighbourCell];
+                    for (; b < neighbourEnd; b++) {
+                        int p1 = cellParticles[a];
+                        int p2 = cellParticles[b];
+                        if (isClose(p1, p2)) {
+                            addPair(p1, p2);
+                        }
+                    }
                 }
             }
         }
     }
-    private void clearGrid() {
-        
-        for(Set<Particle>[] row: grid) {
-            for(Set<Particle> cell: row) {
-                cell.clear();
+
+    private void checkObstacles(ParticleStore store, ObstacleIndex obstacleIndex) {
+        int[] obstacles = obstacleIndex.getObstacles();
+
+        obstaclePairCount = 0;
+
+        for (int i = store.getFirstParticle(); i < store.size(); i++) {
+            int cell = cellOf[i];
+            for (int k = obstacleIndex.getStart(cell); k < obstacleIndex.getEnd(cell); k++) {
+                int o = obstacles[k];
+                if (isClose(i, o)) {
+                    addObstaclePair(i, o);
+                }
             }
         }
     }
 
-    private void updateGrid(List<Particle> particles) { 
-        // agrego cada particula a su celda
-        for(Particle p : particles) {
+    private boolean isClose(int p1, int p2) {
+        double dx = px[p1] - px[p2];
+        double dy = py[p1] - py[p2];
+        double limit = pradius[p1] + pradius[p2] + skin;
+        return dx * dx + dy * dy < limit * limit;
+    }
+
+    private void addObstaclePair(int particle, int obstacle) {
+        if (obstaclePairCount == obstaclePairI.length) {
+            obstaclePairI = Arrays.copyOf(obstaclePairI, 2 * obstaclePairCount);
+            obstaclePairJ = Arrays.copyOf(obstaclePairJ, 2 * obstaclePairCount);
+        }
+        obstaclePairI[obstaclePairCount] = particle;
+        obstaclePairJ[obstaclePairCount] = obstacle;
+        obstaclePairCount++;
+    }
+
+    private void addPair(int p1, int p2) {
+        if (pairCount == pairI.length) {
+            pairI = Arrays.copyOf(pairI, 2 * pairCount);
+            pairJ = Arrays.copyOf(pairJ, 2 * pairCount);
+        }
+        pairI[pairCount] = p1;
+        pairJ[pairCount] = p2;
+        pairCount++;
+    }
+
+    // Los obstaculos no se mueven, no los agrego a la grilla (ver ObstacleIndex)
+    private void updateGrid(ParticleStore store) {
+        int first = store.getFirstParticle();
+        int size = store.size();
+
+        if (cellOf.length < size) {
+            cellOf = new int[size];
+            cellParticles = new int[size];
+        }
+
+        double[] px = store.getX();
+        double[] py = store.getY();
+
+        Arrays.fill(cellStart, 0);
+
+        // cuento cuantas particulas caen en cada celda
+        for (int i = first; i < size; i++) {
             // las que tienen pos negativa las pongo en la primera columna
-            int x = (int) Math.max(0, ((p.getX() * Mx) / Lx));
+            int x = (int) Math.max(0, ((px[i] * Mx) / Lx));
             x = Math.min(x, Mx - 1);
-            int y = (int) Math.max(0, ((p.getY() * My) / Ly));
+            int y = (int) Math.max(0, ((py[i] * My) / Ly));
             y = Math.min(y, My - 1);
-            grid[x][y].add(p);
+
+            int cell = x * My + y;
+            cellOf[i] = cell;
+            cellStart[cell + 1]++;
+        }
+
+        for (int c = 0; c < Mx * My; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+
+        // agrego cada particula a su celda
+        System.arraycopy(cellStart, 0, cellCursor, 0, Mx * My);
+        for (int i = first; i < size; i++) {
+            cellParticles[cellCursor[cellOf[i]]++] = i;
         }
     }
 }
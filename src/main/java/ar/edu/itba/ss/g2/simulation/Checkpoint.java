@@ -0,0 +1,44 @@
+package ar.edu.itba.ss.g2.simulation;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+// State of a Simulation between two steps, enough to continue it bit for bit.
+// snapshotFrames and flowSamples are the lines of output written up to that
+// point, so a resumed run can drop whatever was written after it.
+public record Checkpoint(int snapshotFrames, long flowSamples, byte[] state) {
+
+    static void writeArray(DataOutput out, double[] array) throws IOException {
+        out.writeInt(array.length);
+        for (double value : array) {
+            out.writeDouble(value);
+        }
+    }
+
+    // Into an existing array, which must have the saved length
+    static void readArray(DataInput in, double[] array) throws IOException {
+        if (in.readInt() != array.length) {
+            throw new IOException("Checkpoint doesn't match the simulation");
+        }
+        for (int i = 0; i < array.length; i++) {
+            array[i] = in.readDouble();
+        }
+    }
+
+    static void writeArray(DataOutput out, long[] array) throws IOException {
+        out.writeInt(array.length);
+        for (long value : array) {
+            out.writeLong(value);
+        }
+    }
+
+    static void readArray(DataInput in, long[] array) throws IOException {
+        if (in.readInt() != array.length) {
+            throw new IOException("Checkpoint doesn't match the simulation");
+        }
+        for (int i = 0; i < array.length; i++) {
+            array[i] = in.readLong();
+        }
+    }
+}
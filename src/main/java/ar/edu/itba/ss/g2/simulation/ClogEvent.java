@@ -0,0 +1,6 @@
+package ar.edu.itba.ss.g2.simulation;
+
+import ar.edu.itba.ss.g2.config.ClogPolicy;
+
+// kineticEnergy: mean per particle when the clog was detected
+public record ClogEvent(double time, double kineticEnergy, ClogPolicy action) {}
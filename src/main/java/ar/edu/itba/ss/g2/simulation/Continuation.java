@@ -0,0 +1,121 @@
+package ar.edu.itba.ss.g2.simulation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Steps the acceleration of an equilibrated simulation through a list. Each
+// step starts from the final state of the previous one, settles for
+// settleTime and then measures the flow rate for measureTime, so only the
+// first run pays for the transient from the initial packing.
+public class Continuation {
+
+    // Flow rate of one step over [start, end), standardError comes from the
+    // batch means of the windows in it (NaN with less than two)
+    public record Step(
+            double acceleration,
+            double start,
+            double end,
+            long discharges,
+            double flowRate,
+            double standardError,
+            StopReason stopReason) {}
+
+    // Receives each step as soon as it's measured
+    public interface Listener {
+        void onStep(Step step);
+    }
+
+    private Continuation() {
+        throw new RuntimeException("Util class");
+    }
+
+    // The simulation must have already run to its equilibrated state. Stops
+    // after the step where a clog aborts the run.
+    public static List<Step> run(
+            Simulation simulation,
+            List<Double> accelerations,
+            double settleTime,
+            double measureTime,
+            double window) {
+        return run(simulation, accelerations, settleTime, measureTime, window, null);
+    }
+
+    public static List<Step> run(
+            Simulation simulation,
+            List<Double> accelerations,
+            double settleTime,
+            double measureTime,
+            double window,
+            Listener listener) {
+
+        List<Step> steps = new ArrayList<>();
+
+        for (double acceleration : accelerations) {
+            simulation.setAcceleration(acceleration);
+            simulation.runUntil(simulation.getCurrentTime() + settleTime);
+
+            double start = simulation.getCurrentTime();
+            List<Double> dischargeTimes = simulation.getDischargeTimes();
+            int first = dischargeTimes.size();
+
+            if (simulation.getStopReason() != StopReason.CLOG) {
+                simulation.runUntil(start + measureTime);
+            }
+
+            Step step =
+                    measure(
+                            acceleration,
+                            start,
+                            simulation.getCurrentTime(),
+                            dischargeTimes.subList(first, dischargeTimes.size()),
+                            window,
+                            simulation.getStopReason());
+            steps.add(step);
+
+            if (listener != null) {
+                listener.onStep(step);
+            }
+
+            if (step.stopReason() == StopReason.CLOG) {
+                break;
+            }
+        }
+
+        return steps;
+    }
+
+    private static Step measure(
+            double acceleration,
+            double start,
+            double end,
+            List<Double> dischargeTimes,
+            double window,
+            StopReason stopReason) {
+
+        double flowRate = end > start ? dischargeTimes.size() / (end - start) : 0;
+
+        // Batch means over the whole windows of the step, as FlowAnalytics
+        int batches = (int) Math.floor((end - start) / window);
+        long[] counts = new long[batches];
+        for (double time : dischargeTimes) {
+            int batch = (int) ((time - start) / window);
+            if (batch < batches) {
+                counts[batch]++;
+            }
+        }
+
+        BatchMeans batchMeans = new BatchMeans();
+        for (long count : counts) {
+            batchMeans.add(count / window);
+        }
+
+        return new Step(
+                acceleration,
+                start,
+                end,
+                dischargeTimes.size(),
+                flowRate,
+                batchMeans.getStandardError(),
+                stopReason);
+    }
+}
@@ -0,0 +1,68 @@
+package ar.edu.itba.ss.g2.simulation;
+
+import ar.edu.itba.ss.g2.model.ParticleStore;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+// Emulates a float32 state over the double store, only for
+// PrecisionComparison. The positions and velocities are rounded to the
+// nearest float before and after every step, so each step starts from the
+// values a float32 store would hold, also after a reinsertion or a kick,
+// while the forces and the arithmetic within the step stay in double like
+// the accumulators of a float32 store. The arrays are still doubles, so it
+// shows the accuracy of a float32 state but none of its memory savings.
+class FloatStateIntegrator implements Integrator {
+
+    private final ParticleStore store;
+    private final Integrator integrator;
+
+    FloatStateIntegrator(ParticleStore store, Integrator integrator) {
+        this.store = store;
+        this.integrator = integrator;
+    }
+
+    @Override
+    public void initialize() {
+        // The obstacles too, they are only read
+        round(0);
+        integrator.initialize();
+    }
+
+    @Override
+    public void step(double dt) {
+        round(store.getFirstParticle());
+        integrator.step(dt);
+        round(store.getFirstParticle());
+    }
+
+    @Override
+    public int getForceEvaluationsPerStep() {
+        return integrator.getForceEvaluationsPerStep();
+    }
+
+    @Override
+    public void writeState(DataOutput out) throws IOException {
+        integrator.writeState(out);
+    }
+
+    @Override
+    public void readState(DataInput in) throws IOException {
+        integrator.readState(in);
+    }
+
+    private void round(int first) {
+        double[] x = store.getX();
+        double[] y = store.getY();
+        double[] vx = store.getVx();
+        double[] vy = store.getVy();
+
+        for (int i = first; i < store.size(); i++) {
+            x[i] = (float) x[i];
+            y[i] = (float) y[i];
+            vx[i] = (float) vx[i];
+            vy[i] = (float) vy[i];
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package ar.edu.itba.ss.g2.simulation;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+// Flow rate measured while the simulation runs, with constant memory.
+//
+// Time is split in bins of window / BINS. The sliding-window flow rate counts
+// the discharges of the last BINS bins, and every BINS bins close a batch: a
+// non-overlapping window. The steady state starts at the first batch whose
+// count differs from the previous one by less than two Poisson standard
+// deviations, and the steady flow rate is the mean of the batches from there
+// on, with its standard error from their variance (batch means).
+public class FlowAnalytics {
+
+    private static final int BINS = 10;
+
+    // Called when a bin closes with the cumulative discharges and the flow
+    // rate of the window that ends there
+    public interface Listener {
+        void onSample(double time, long discharges, double flowRate);
+    }
+
+    private final double window;
+    private final double binWidth;
+
+    // Discharges of the last BINS bins, bin % BINS is the oldest
+    private final long[] bins;
+    private long windowDischarges;
+    private long bin;
+    private long binDischarges;
+
+    private long discharges;
+
+    private long previousBatch = -1;
+    private double steadyStateTime = Double.NaN;
+
+    // Flow rate of the batches since the steady state
+    private final BatchMeans batchMeans = new BatchMeans();
+
+    private Listener listener;
+
+    public FlowAnalytics(double window) {
+        this.window = window;
+        this.binWidth = window / BINS;
+        this.bins = new long[BINS];
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    // Closes the bins that ended before time
+    public void advance(double time) {
+        while (time >= (bin + 1) * binWidth) {
+            closeBin();
+        }
+    }
+
+    public void record(double time) {
+        advance(time);
+        binDischarges++;
+        discharges++;
+    }
+
+    private void closeBin() {
+        int slot = (int) (bin % BINS);
+        windowDischarges += binDischarges - bins[slot];
+        bins[slot] = binDischarges;
+        binDischarges = 0;
+        bin++;
+
+        double end = bin * binWidth;
+
+        if (listener != null) {
+            listener.onSample(end, discharges, getFlowRate());
+        }
+
+        if (bin % BINS == 0) {
+            closeBatch(end);
+        }
+    }
+
+    private void closeBatch(double end) {
+        long count = windowDischarges;
+
+        if (Double.isNaN(steadyStateTime)
+                && previousBatch >= 0
+                && count + previousBatch > 0
+                && Math.abs(count - previousBatch) <= 2 * Math.sqrt(count + previousBatch)) {
+            steadyStateTime = end - window;
+        }
+        previousBatch = count;
+
+        if (!Double.isNaN(steadyStateTime)) {
+            batchMeans.add(count / window);
+        }
+    }
+
+    void writeState(DataOutput out) throws IOException {
+        Checkpoint.writeArray(out, bins);
+        out.writeLong(windowDischarges);
+        out.writeLong(bin);
+        out.writeLong(binDischarges);
+        out.writeLong(discharges);
+        out.writeLong(previousBatch);
+        out.writeDouble(steadyStateTime);
+        batchMeans.writeState(out);
+    }
+
+    void readState(DataInput in) throws IOException {
+        Checkpoint.readArray(in, bins);
+        windowDischarges = in.readLong();
+        bin = in.readLong();
+        binDischarges = in.readLong();
+        discharges = in.readLong();
+        previousBatch = in.readLong();
+        steadyStateTime = in.readDouble();
+        batchMeans.readState(in);
+    }
+
+    // Bins closed so far, one sample of the Listener each
+    public long getSamples() {
+        return bin;
+    }
+
+    public long getDischarges() {
+        return discharges;
+    }
+
+    public double getWindow() {
+        return window;
+    }
+
+    // Discharges per unit time over the last window, NaN before the first bin
+    // closes
+    public double getFlowRate() {
+        if (bin == 0) {
+            return Double.NaN;
+        }
+        return windowDischarges / (Math.min(bin, BINS) * binWidth);
+    }
+
+    public boolean isSteady() {
+        return !Double.isNaN(steadyStateTime);
+    }
+
+    // NaN until the steady state is detected
+    public double getSteadyStateTime() {
+        return steadyStateTime;
+    }
+
+    public long getBatches() {
+        return batchMeans.getBatches();
+    }
+
+    public double getSteadyFlowRate() {
+        return batchMeans.getMean();
+    }
+
+    public double getStandardError() {
+        return batchMeans.getStandardError();
+    }
+}
@@ -0,0 +1,620 @@
+package ar.edu.itba.ss.g2.simulation;
+
+import ar.edu.itba.ss.g2.config.ForceKernel;
+import ar.edu.itba.ss.g2.model.ParticleStore;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Evaluates the forces on the mobile particles. Every contact is first
+// written into a per-pair buffer and then added to its particles in pair
+// order. With more than one thread the pairs are split into work units on a
+// ForkJoinPool and each particle gathers its pairs in that same order, so the
+// forces are the same bit for bit for any number of threads. The vector
+// kernel also gives the same forces, it only fills the per-pair buffer.
+public class ForceEngine implements AutoCloseable {
+
+    private static final int X = 0;
+    private static final int Y = 1;
+
+    // Pairs or particles per work unit
+    private static final int WORK_UNIT = 2048;
+
+    private final ParticleStore store;
+    private final VerletList verletList;
+    private final CellIndexMethod cellIndexMethod;
+
+    private final double width;
+    private final double normalK;
+    private final double gamma;
+    private final double tangentialK;
+    private double acceleration;
+
+    private final int threads;
+    private final ForkJoinPool pool;
+
+    // Work of each parallel evaluation, created once. They read the lists and
+    // the buffers when they run, and gatherForces writes into forcesTarget
+    private final RangeBody pairContacts;
+    private final RangeBody obstaclePairContacts;
+    private final RangeBody gatherForces;
+    private double[][] forcesTarget;
+
+    // Tasks reused by every parallelFor, units only grows with the lists
+    private final RangeRoot root = new RangeRoot();
+    private RangeTask[] units = new RangeTask[0];
+
+    // null with the scalar kernel
+    private final VectorContactKernel vectorKernel;
+
+    // Force of each contact on pairI[k] (pairJ[k] receives minus it)
+    private double[] pairFx;
+    private double[] pairFy;
+    private double[] obstaclePairFx;
+    private double[] obstaclePairFy;
+
+    // Pairs of each particle in increasing order, k when the particle is
+    // pairI[k] and ~k when it is pairJ[k]. Only used with more than one thread.
+    private final int[] incidenceStart;
+    private final int[] incidenceCursor;
+    private int[] incidence;
+    // Version of the Verlet lists the incidence was built from. The lists may
+    // also be rebuilt outside calculate (getMaxOverlap, a restore)
+    private long incidenceVersion = -1;
+
+    // Obstacle pairs come sorted by particle
+    private final int[] obstaclePairStart;
+
+    private StepProfiler profiler = StepProfiler.DISABLED;
+
+    public ForceEngine(
+            ParticleStore store,
+            VerletList verletList,
+            double width,
+            double acceleration,
+            double normalK,
+            double gamma,
+            double tangentialK,
+            int threads,
+            ForceKernel forceKernel) {
+        this.store = store;
+        this.verletList = verletList;
+        this.cellIndexMethod = verletList.getCellIndexMethod();
+
+        this.width = width;
+        this.acceleration = acceleration;
+        this.normalK = normalK;
+        this.gamma = gamma;
+        this.tangentialK = tangentialK;
+
+        this.threads = threads;
+        this.pool = threads > 1 ? new ForkJoinPool(threads) : null;
+
+        this.pairContacts =
+                (from, to) ->
+                        calculateContacts(
+                                cellIndexMethod.getPairI(),
+                                cellIndexMethod.getPairJ(),
+                                from,
+                                to,
+                                pairFx,
+                                pairFy);
+        this.obstaclePairContacts =
+                (from, to) ->
+                        calculateContacts(
+                                cellIndexMethod.getObstaclePairI(),
+                                cellIndexMethod.getObstaclePairJ(),
+                                from,
+                                to,
+                                obstaclePairFx,
+                                obstaclePairFy);
+        this.gatherForces =
+                (from, to) -> {
+                    for (int k = from; k < to; k++) {
+                        gather(k, forcesTarget);
+                    }
+                };
+
+        if (forceKernel == ForceKernel.VECTOR && !isVectorApiAvailable()) {
+            System.err.println(
+                    "The Vector API is not available (run java with --add-modules"
+                            + " jdk.incubator.vector), using the scalar force kernel");
+        }
+        this.vectorKernel =
+                forceKernel == ForceKernel.VECTOR && isVectorApiAvailable()
+                        ? new VectorContactKernel(store, normalK, gamma, tangentialK)
+                        : null;
+
+        this.pairFx = new double[0];
+        this.pairFy = new double[0];
+        this.obstaclePairFx = new double[0];
+        this.obstaclePairFy = new double[0];
+
+        int count = store.getParticleCount();
+        this.incidenceStart = new int[count + 1];
+        this.incidenceCursor = new int[count];
+        this.incidence = new int[0];
+        this.obstaclePairStart = new int[count + 1];
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    // The one in use, SCALAR when VECTOR was asked without the Vector API
+    public ForceKernel getForceKernel() {
+        return vectorKernel != null ? ForceKernel.VECTOR : ForceKernel.SCALAR;
+    }
+
+    public double getAcceleration() {
+        return acceleration;
+    }
+
+    // Takes effect from the next calculate
+    public void setAcceleration(double acceleration) {
+        this.acceleration = acceleration;
+    }
+
+    public VerletList getVerletList() {
+        return verletList;
+    }
+
+    public StepProfiler getProfiler() {
+        return profiler;
+    }
+
+    public void setProfiler(StepProfiler profiler) {
+        this.profiler = profiler;
+    }
+
+    // First index x, second index y, indexed by particle - store.getFirstParticle()
+    public void calculate(double[][] forces) {
+        long start = profiler.start();
+        verletList.update(store);
+        profiler.stop(StepProfiler.Phase.NEIGHBOURS, start);
+
+        start = profiler.start();
+        calculateForces(forces);
+        profiler.stop(StepProfiler.Phase.FORCES, start);
+    }
+
+    private void calculateForces(double[][] forces) {
+        int pairCount = cellIndexMethod.getPairCount();
+        int obstaclePairCount = cellIndexMethod.getObstaclePairCount();
+
+        if (pairFx.length < pairCount) {
+            pairFx = new double[2 * pairCount];
+            pairFy = new double[2 * pairCount];
+        }
+        if (obstaclePairFx.length < obstaclePairCount) {
+            obstaclePairFx = new double[2 * obstaclePairCount];
+            obstaclePairFy = new double[2 * obstaclePairCount];
+        }
+        if (vectorKernel != null) {
+            vectorKernel.ensureCapacity(Math.max(pairCount, obstaclePairCount));
+        }
+
+        if (pool == null) {
+            calculateSerial(forces);
+            return;
+        }
+
+        if (incidenceVersion != verletList.getVersion()) {
+            buildIncidence();
+            incidenceVersion = verletList.getVersion();
+        }
+
+        // Contacts, each work unit writes its own pairs
+        parallelFor(0, pairCount, pairContacts);
+        parallelFor(0, obstaclePairCount, obstaclePairContacts);
+
+        // Reduction, each work unit gathers its own particles
+        forcesTarget = forces;
+        parallelFor(0, store.getParticleCount(), gatherForces);
+    }
+
+    private void calculateSerial(double[][] forces) {
+        int first = store.getFirstParticle();
+        double[] mass = store.getMass();
+
+        // Constant acceleration
+        for (int i = first; i < store.size(); i++) {
+            forces[X][i - first] = acceleration * mass[i];
+            forces[Y][i - first] = 0;
+        }
+
+        int[] pairI = cellIndexMethod.getPairI();
+        int[] pairJ = cellIndexMethod.getPairJ();
+        int pairCount = cellIndexMethod.getPairCount();
+
+        // The vector kernel fills the buffer before the sums
+        if (vectorKernel != null) {
+            calculateContacts(pairI, pairJ, 0, pairCount, pairFx, pairFy);
+        }
+
+        for (int k = 0; k < pairCount; k++) {
+            int i = pairI[k] - first;
+            int j = pairJ[k] - first;
+
+            if (vectorKernel == null) {
+                calculateContact(pairI[k], pairJ[k], pairFx, pairFy, k);
+            }
+
+            forces[X][i] += pairFx[k];
+            forces[Y][i] += pairFy[k];
+            forces[X][j] -= pairFx[k];
+            forces[Y][j] -= pairFy[k];
+        }
+
+        int[] obstaclePairI = cellIndexMethod.getObstaclePairI();
+        int[] obstaclePairJ = cellIndexMethod.getObstaclePairJ();
+        int obstaclePairCount = cellIndexMethod.getObstaclePairCount();
+
+        if (vectorKernel != null) {
+            calculateContacts(
+                    obstaclePairI,
+                    obstaclePairJ,
+                    0,
+                    obstaclePairCount,
+                    obstaclePairFx,
+                    obstaclePairFy);
+        }
+
+        // Obstacles don't move, there's no need to keep their forces
+        for (int k = 0; k < obstaclePairCount; k++) {
+            int i = obstaclePairI[k] - first;
+
+            if (vectorKernel == null) {
+                calculateContact(
+                        obstaclePairI[k], obstaclePairJ[k], obstaclePairFx, obstaclePairFy, k);
+            }
+
+            forces[X][i] += obstaclePairFx[k];
+            forces[Y][i] += obstaclePairFy[k];
+        }
+
+        for (int i = first; i < store.size(); i++) {
+            addHorizontalWallCollision(i, forces, i - first);
+        }
+    }
+
+    // Same additions, in the same order, as calculateSerial for particle k
+    private void gather(int k, double[][] forces) {
+        int i = store.getFirstParticle() + k;
+
+        double fx = acceleration * store.getMass()[i];
+        double fy = 0;
+
+        for (int n = incidenceStart[k]; n < incidenceStart[k + 1]; n++) {
+            int pair = incidence[n];
+            if (pair >= 0) {
+                fx += pairFx[pair];
+                fy += pairFy[pair];
+            } else {
+                fx -= pairFx[~pair];
+                fy -= pairFy[~pair];
+            }
+        }
+
+        for (int n = obstaclePairStart[k]; n < obstaclePairStart[k + 1]; n++) {
+            fx += obstaclePairFx[n];
+            fy += obstaclePairFy[n];
+        }
+
+        forces[X][k] = fx;
+        forces[Y][k] = fy;
+
+        addHorizontalWallCollision(i, forces, k);
+    }
+
+    private void buildIncidence() {
+        int first = store.getFirstParticle();
+        int count = store.getParticleCount();
+
+        int[] pairI = cellIndexMethod.getPairI();
+        int[] pairJ = cellIndexMethod.getPairJ();
+        int pairCount = cellIndexMethod.getPairCount();
+
+        Arrays.fill(incidenceStart, 0);
+        for (int k = 0; k < pairCount; k++) {
+            incidenceStart[pairI[k] - first + 1]++;
+            incidenceStart[pairJ[k] - first + 1]++;
+        }
+        for (int k = 0; k < count; k++) {
+            incidenceStart[k + 1] += incidenceStart[k];
+        }
+
+        if (incidence.length < 2 * pairCount) {
+            incidence = new int[4 * pairCount];
+        }
+
+        System.arraycopy(incidenceStart, 0, incidenceCursor, 0, count);
+        for (int k = 0; k < pairCount; k++) {
+            incidence[incidenceCursor[pairI[k] - first]++] = k;
+            incidence[incidenceCursor[pairJ[k] - first]++] = ~k;
+        }
+
+        int[] obstaclePairI = cellIndexMethod.getObstaclePairI();
+        int obstaclePairCount = cellIndexMethod.getObstaclePairCount();
+
+        Arrays.fill(obstaclePairStart, 0);
+        for (int k = 0; k < obstaclePairCount; k++) {
+            obstaclePairStart[obstaclePairI[k] - first + 1]++;
+        }
+        for (int k = 0; k < count; k++) {
+            obstaclePairStart[k + 1] += obstaclePairStart[k];
+        }
+    }
+
+    // Largest overlap between two bodies or a particle and a wall
+    public double getMaxOverlap() {
+        verletList.update(store);
+
+        double maxOverlap = 0;
+
+        int[] pairI = cellIndexMethod.getPairI();
+        int[] pairJ = cellIndexMethod.getPairJ();
+        for (int k = 0; k < cellIndexMethod.getPairCount(); k++) {
+            maxOverlap = Math.max(maxOverlap, overlap(pairI[k], pairJ[k]));
+        }
+
+        int[] obstaclePairI = cellIndexMethod.getObstaclePairI();
+        int[] obstaclePairJ = cellIndexMethod.getObstaclePairJ();
+        for (int k = 0; k < cellIndexMethod.getObstaclePairCount(); k++) {
+            maxOverlap = Math.max(maxOverlap, overlap(obstaclePairI[k], obstaclePairJ[k]));
+        }
+
+        double[] y = store.getY();
+        double[] radius = store.getRadius();
+        for (int i = store.getFirstParticle(); i < store.size(); i++) {
+            maxOverlap = Math.max(maxOverlap, radius[i] - y[i]);
+            maxOverlap = Math.max(maxOverlap, radius[i] - (width - y[i]));
+        }
+
+        return maxOverlap;
+    }
+
+    // Contacts and largest overlap with the lists of the last calculate, which
+    // are not rebuilt here so profiling doesn't change the pairs of later steps
+    public void recordContacts() {
+        int contacts = 0;
+        double maxOverlap = 0;
+
+        int[] pairI = cellIndexMethod.getPairI();
+        int[] pairJ = cellIndexMethod.getPairJ();
+        for (int k = 0; k < cellIndexMethod.getPairCount(); k++) {
+            double overlap = overlap(pairI[k], pairJ[k]);
+            if (overlap > 0) {
+                contacts++;
+                maxOverlap = Math.max(maxOverlap, overlap);
+            }
+        }
+
+        int[] obstaclePairI = cellIndexMethod.getObstaclePairI();
+        int[] obstaclePairJ = cellIndexMethod.getObstaclePairJ();
+        for (int k = 0; k < cellIndexMethod.getObstaclePairCount(); k++) {
+            double overlap = overlap(obstaclePairI[k], obstaclePairJ[k]);
+            if (overlap > 0) {
+                contacts++;
+                maxOverlap = Math.max(maxOverlap, overlap);
+            }
+        }
+
+        double[] y = store.getY();
+        double[] radius = store.getRadius();
+        for (int i = store.getFirstParticle(); i < store.size(); i++) {
+            double overlap = Math.max(radius[i] - y[i], radius[i] - (width - y[i]));
+            if (overlap > 0) {
+                contacts++;
+                maxOverlap = Math.max(maxOverlap, overlap);
+            }
+        }
+
+        profiler.recordStep(contacts, maxOverlap);
+    }
+
+    // Energy stored in the normal springs of the contacts and the walls, with
+    // the lists of the last calculate like recordContacts, so measuring it
+    // doesn't change when the lists are rebuilt. Every step ends with a
+    // calculate at its final positions, and a reinserted particle touches
+    // nothing, so no contact is missing.
+    public double getElasticEnergy() {
+        double energy = 0;
+
+        int[] pairI = cellIndexMethod.getPairI();
+        int[] pairJ = cellIndexMethod.getPairJ();
+        for (int k = 0; k < cellIndexMethod.getPairCount(); k++) {
+            energy += elasticEnergy(pairI[k], pairJ[k]);
+        }
+
+        int[] obstaclePairI = cellIndexMethod.getObstaclePairI();
+        int[] obstaclePairJ = cellIndexMethod.getObstaclePairJ();
+        for (int k = 0; k < cellIndexMethod.getObstaclePairCount(); k++) {
+            energy += elasticEnergy(obstaclePairI[k], obstaclePairJ[k]);
+        }
+
+        double[] y = store.getY();
+        double[] radius = store.getRadius();
+        for (int i = store.getFirstParticle(); i < store.size(); i++) {
+            double overlap = Math.max(radius[i] - y[i], radius[i] - (width - y[i]));
+            if (overlap > 0) {
+                energy += 0.5 * normalK * overlap * overlap;
+            }
+        }
+
+        return energy;
+    }
+
+    private double elasticEnergy(int i, int j) {
+        double overlap = overlap(i, j);
+        return overlap > 0 ? 0.5 * normalK * overlap * overlap : 0;
+    }
+
+    private double overlap(int i, int j) {
+        double dx = store.getX()[i] - store.getX()[j];
+        double dy = store.getY()[i] - store.getY()[j];
+        return store.getRadius()[i] + store.getRadius()[j] - Math.sqrt(dx * dx + dy * dy);
+    }
+
+    // - Particle
+
+    // Forces of the pairs from ... to - 1, the vector kernel leaves a tail
+    // shorter than its lanes
+    private void calculateContacts(
+            int[] pairI, int[] pairJ, int from, int to, double[] outX, double[] outY) {
+        int k =
+                vectorKernel != null
+                        ? vectorKernel.calculate(pairI, pairJ, from, to, outX, outY)
+                        : from;
+        for (; k < to; k++) {
+            calculateContact(pairI[k], pairJ[k], outX, outY, k);
+        }
+    }
+
+    // Force on i due to its contact with j, zero if they don't overlap. Swapping
+    // i and j flips the normal, the tangential and the relative velocity, so
+    // the force on j is exactly minus the force on i.
+    private void calculateContact(int i, int j, double[] outX, double[] outY, int k) {
+        double[] px = store.getX();
+        double[] py = store.getY();
+        double[] pvx = store.getVx();
+        double[] pvy = store.getVy();
+        double[] pradius = store.getRadius();
+
+        double dx = px[i] - px[j];
+        double dy = py[i] - py[j];
+
+        double distance = Math.sqrt(dx * dx + dy * dy);
+        double overlap = pradius[i] + pradius[j] - distance;
+
+        if (overlap <= 0) {
+            outX[k] = 0;
+            outY[k] = 0;
+            return;
+        }
+
+        double normalX = dx / distance;
+        double normalY = dy / distance;
+        double tangentialX = -normalY;
+        double tangentialY = normalX;
+
+        // Relative velocities
+
+        double relativeVx = pvx[i] - pvx[j];
+        double relativeVy = pvy[i] - pvy[j];
+
+        // overlap rate change
+        double relativeVNormal = relativeVx * normalX + relativeVy * normalY;
+        double relativeVTangential = relativeVx * tangentialX + relativeVy * tangentialY;
+
+        // Forces
+
+        double normalForce = -normalK * overlap + gamma * relativeVNormal;
+        double tangentialForce = -tangentialK * overlap * relativeVTangential;
+
+        outX[k] = normalForce * -normalX + tangentialForce * tangentialX;
+        outY[k] = normalForce * -normalY + tangentialForce * tangentialY;
+    }
+
+    // - Horizontal Wall
+
+    private void addHorizontalWallCollision(int i, double[][] forces, int k) {
+        double y = store.getY()[i];
+        double radius = store.getRadius()[i];
+
+        // Rate of overlap change
+        double vy = store.getVy()[i];
+
+        // Bottom wall at width=0
+        double overlap = radius - y;
+        if (overlap > 0) {
+            forces[Y][k] += normalK * overlap - gamma * vy;
+            return;
+        }
+
+        // Top wall at width=width
+        overlap = radius - (width - y);
+        if (overlap > 0) {
+            forces[Y][k] += -normalK * overlap - gamma * vy;
+        }
+
+        // No collision
+    }
+
+    // The incubator module has to be added to the boot layer with
+    // --add-modules, otherwise loading VectorContactKernel fails
+    private static boolean isVectorApiAvailable() {
+        return ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+    }
+
+    // Stops the threads of the pool, the engine can't be used afterwards
+    @Override
+    public void close() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    // ========== Work units =============
+
+    private interface RangeBody {
+        void run(int from, int to);
+    }
+
+    // Runs [from, to) in WORK_UNIT sized units on the pool. The tasks are
+    // reset and reused, so nothing is allocated once the lists stop growing
+    private void parallelFor(int from, int to, RangeBody body) {
+        if (to <= from) {
+            return;
+        }
+
+        int count = (to - from + WORK_UNIT - 1) / WORK_UNIT;
+        if (units.length < count) {
+            RangeTask[] grown = Arrays.copyOf(units, 2 * count);
+            for (int k = units.length; k < grown.length; k++) {
+                grown[k] = new RangeTask();
+            }
+            units = grown;
+        }
+
+        for (int k = 0; k < count; k++) {
+            RangeTask unit = units[k];
+            unit.reinitialize();
+            unit.from = from + k * WORK_UNIT;
+            unit.to = Math.min(to, unit.from + WORK_UNIT);
+            unit.body = body;
+        }
+
+        root.reinitialize();
+        root.count = count;
+        pool.invoke(root);
+    }
+
+    // Forks the first count units and runs the first one itself
+    private class RangeRoot extends RecursiveAction {
+        private int count;
+
+        @Override
+        protected void compute() {
+            for (int k = count - 1; k > 0; k--) {
+                units[k].fork();
+            }
+            units[0].invoke();
+            for (int k = 1; k < count; k++) {
+                units[k].join();
+            }
+        }
+    }
+
+    private static class RangeTask extends RecursiveAction {
+        private int from;
+        private int to;
+        private RangeBody body;
+
+        @Override
+        protected void compute() {
+            body.run(from, to);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package ar.edu.itba.ss.g2.simulation;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+// Advances the mobile particles of the store, evaluating the forces through
+// the ForceEngine
+public interface Integrator {
+
+    // Called with the particles at t=0, before the first step, and again when
+    // the velocities change between steps, see Simulation.perturb
+    void initialize();
+
+    void step(double dt);
+
+    // Number of force evaluations done by each step
+    int getForceEvaluationsPerStep();
+
+    // Forces kept between steps, see Checkpoint. readState replaces initialize
+    void writeState(DataOutput out) throws IOException;
+
+    void readState(DataInput in) throws IOException;
+}
@@ -0,0 +1,115 @@
+package ar.edu.itba.ss.g2.simulation;
+
+import ar.edu.itba.ss.g2.config.Config;
+import ar.edu.itba.ss.g2.config.IntegratorType;
+import ar.edu.itba.ss.g2.model.Particle;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Runs every integration scheme from the same initial state and reports:
+// - throughput: steps per second of the configured (driven, damped) system
+// - energy drift: relative change of the energy of the same particles
+//   without acceleration, damping nor tangential force, starting with random
+//   downstream velocities of unit speed, where the energy should be conserved
+// Both runs take the normal fixed step, so the particles that leave are
+// reinserted at the inlet with the same velocity and the energy stays in the
+// channel. Without acceleration nothing brings back a particle that leaves
+// through the inlet, so the velocities start pointing downstream.
+public class IntegratorComparison {
+
+    // Energy samples taken along the conservative run
+    private static final int ENERGY_SAMPLES = 100;
+
+    public record Result(
+            IntegratorType integrator,
+            int forceEvaluationsPerStep,
+            long steps,
+            double stepsPerSecond,
+            double energyDrift,
+            double maxEnergyError) {}
+
+    private final List<Particle> particles;
+    private final List<Particle> obstacles;
+    private final Config config;
+
+    public IntegratorComparison(List<Particle> particles, List<Particle> obstacles, Config config) {
+        this.particles = particles;
+        this.obstacles = obstacles;
+        this.config = config;
+    }
+
+    public List<Result> compare() {
+        List<Result> results = new ArrayList<>();
+
+        for (IntegratorType integrator : IntegratorType.values()) {
+            System.out.println("Comparing " + integrator.getName() + "...");
+            results.add(compare(integrator));
+        }
+
+        return results;
+    }
+
+    private Result compare(IntegratorType integrator) {
+        long steps = Math.round(config.getMaxTime() / config.getIntegrationStep());
+
+        // Every integrator takes the same steps, and a clog doesn't stop them
+        Config driven =
+                new Config.Builder(config)
+                        .integrator(integrator)
+                        .adaptiveStep(false)
+                        .clogInterval(0)
+                        .build();
+
+        // Throughput
+        double seconds;
+        try (Simulation simulation =
+                new Simulation(particles, obstacles, driven, new Random(config.getSeed()))) {
+
+            // Only initializes
+            simulation.runUntil(0);
+            long start = System.nanoTime();
+            simulation.runUntil(config.getMaxTime());
+            seconds = (System.nanoTime() - start) / 1e9;
+        }
+
+        // Energy drift
+        Config conservative =
+                new Config.Builder(driven).acceleration(0).gamma(0).tangentialK(0).build();
+
+        Random random = new Random(config.getSeed());
+        List<Particle> moving = new ArrayList<>(particles.size());
+        for (Particle particle : particles) {
+            double angle = Math.PI * (random.nextDouble() - 0.5);
+            Particle copy = new Particle(particle);
+            copy.setVx(Math.cos(angle));
+            copy.setVy(Math.sin(angle));
+            moving.add(copy);
+        }
+
+        try (Simulation simulation = new Simulation(moving, obstacles, conservative, random)) {
+            simulation.runUntil(0);
+
+            double initialEnergy = simulation.getEnergy();
+            double maxEnergyError = 0;
+
+            for (int sample = 1; sample <= ENERGY_SAMPLES; sample++) {
+                simulation.runUntil(config.getMaxTime() * sample / ENERGY_SAMPLES);
+
+                double error = Math.abs(simulation.getEnergy() - initialEnergy) / initialEnergy;
+                maxEnergyError = Math.max(maxEnergyError, error);
+            }
+
+            double energyDrift = (simulation.getEnergy() - initialEnergy) / initialEnergy;
+
+            return new Result(
+                    integrator,
+                    simulation.getIntegrator().getForceEvaluationsPerStep(),
+                    steps,
+                    steps / seconds,
+                    energyDrift,
+                    maxEnergyError);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package ar.edu.itba.ss.g2.simulation;
+
+import ar.edu.itba.ss.g2.model.ParticleStore;
+
+import java.util.Arrays;
+
+// Obstacles never move, so the obstacles that a particle in a given cell can
+// touch are computed once over the grid of the CellIndexMethod. The
+// candidates of cell c are cellObstacles[cellStart[c]] ...
+// cellObstacles[cellStart[c + 1] - 1].
+public class ObstacleIndex {
+
+    private final int[] cellStart;
+    private final int[] cellObstacles;
+
+    // reach: largest distance between the centers of a particle and an
+    // obstacle that can still be in contact
+    public ObstacleIndex(ParticleStore store, CellIndexMethod grid, double reach) {
+        int Mx = grid.getMx();
+        int My = grid.getMy();
+        double cellLength = grid.getCellLength();
+        double cellWidth = grid.getCellWidth();
+
+        double[] x = store.getX();
+        double[] y = store.getY();
+        double[] radius = store.getRadius();
+
+        this.cellStart = new int[Mx * My + 1];
+
+        int[] candidates = new int[Math.max(1, store.getObstacleCount())];
+        int count = 0;
+
+        for (int cx = 0; cx < Mx; cx++) {
+            for (int cy = 0; cy < My; cy++) {
+                int cell = cx * My + cy;
+
+                double minX = cx * cellLength;
+                double minY = cy * cellWidth;
+
+                for (int o = 0; o < store.getObstacleCount(); o++) {
+                    // Closest point of the cell to the obstacle
+                    double dx = x[o] - Math.max(minX, Math.min(x[o], minX + cellLength));
+                    double dy = y[o] - Math.max(minY, Math.min(y[o], minY + cellWidth));
+
+                    double limit = reach + radius[o];
+                    if (dx * dx + dy * dy < limit * limit) {
+                        if (count == candidates.length) {
+                            candidates = Arrays.copyOf(candidates, 2 * count);
+                        }
+                        candidates[count++] = o;
+                    }
+                }
+
+                cellStart[cell + 1] = count;
+            }
+        }
+
+        this.cellObstacles = Arrays.copyOf(candidates, count);
+    }
+
+    public int getStart(int cell) {
+        return cellStart[cell];
+    }
+
+    public int getEnd(int cell) {
+        return cellStart[cell + 1];
+    }
+
+    public int[] getObstacles() {
+        return cellObstacles;
+    }
+}
@@ -0,0 +1,144 @@
+package ar.edu.itba.ss.g2.simulation;
+
+import ar.edu.itba.ss.g2.config.Config;
+import ar.edu.itba.ss.g2.config.StatePrecision;
+import ar.edu.itba.ss.g2.model.Particle;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Runs the configured system until tf with every state precision, from the
+// same initial state and seed, and compares each one with the DOUBLE run:
+// - curve difference: largest difference between the discharges until t of
+//   both runs, over every t
+// - flow rate deviation: difference between the steady flow rates in
+//   standard errors of that difference, NaN when there is no such error
+// The trajectories are chaotic, so they separate whatever the precision; the
+// flow rate is what has to agree.
+//
+// FLOAT is only emulated by rounding a double state, see FloatStateIntegrator.
+public class PrecisionComparison {
+
+    public record Result(
+            StatePrecision precision,
+            long discharges,
+            double flowRate,
+            double standardError,
+            double seconds,
+            long maxCurveDifference,
+            double flowRateDeviation) {}
+
+    private final List<Particle> particles;
+    private final List<Particle> obstacles;
+    private final Config config;
+
+    public PrecisionComparison(List<Particle> particles, List<Particle> obstacles, Config config) {
+        this.particles = particles;
+        this.obstacles = obstacles;
+        this.config = config;
+    }
+
+    public List<Result> compare() {
+        List<Result> results = new ArrayList<>();
+
+        Simulation reference = null;
+        for (StatePrecision precision : StatePrecision.values()) {
+            System.out.println("Comparing " + precision.getName() + "...");
+
+            Simulation simulation =
+                    createSimulation(
+                            particles, obstacles, config, precision, new Random(config.getSeed()));
+
+            // The stop conditions would end each run at a different time
+            long start = System.nanoTime();
+            try {
+                simulation.runUntil(config.getMaxTime());
+            } finally {
+                // Only the results are read from here on
+                simulation.close();
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            if (reference == null) {
+                reference = simulation;
+            }
+
+            FlowAnalytics flow = simulation.getFlowAnalytics();
+            FlowAnalytics referenceFlow = reference.getFlowAnalytics();
+
+            double difference = flow.getSteadyFlowRate() - referenceFlow.getSteadyFlowRate();
+            double error =
+                    Math.sqrt(
+                            flow.getStandardError() * flow.getStandardError()
+                                    + referenceFlow.getStandardError()
+                                            * referenceFlow.getStandardError());
+
+            results.add(
+                    new Result(
+                            precision,
+                            flow.getDischarges(),
+                            flow.getSteadyFlowRate(),
+                            flow.getStandardError(),
+                            seconds,
+                            maxCurveDifference(
+                                    reference.getDischargeTimes(), simulation.getDischargeTimes()),
+                            deviation(difference, error)));
+        }
+
+        return results;
+    }
+
+    // Undefined without a standard error, which needs a few batches of
+    // discharges in both runs
+    private static double deviation(double difference, double error) {
+        if (error > 0 && !Double.isNaN(error)) {
+            return difference / error;
+        }
+        return Double.NaN;
+    }
+
+    static Simulation createSimulation(
+            List<Particle> particles,
+            List<Particle> obstacles,
+            Config config,
+            StatePrecision precision,
+            Random random) {
+        return new Simulation(
+                particles,
+                obstacles,
+                config,
+                random,
+                null,
+                (store, integrator) ->
+                        precision == StatePrecision.FLOAT
+                                ? new FloatStateIntegrator(store, integrator)
+                                : integrator);
+    }
+
+    // Both lists are sorted, the count of each one is compared after every
+    // time at which either discharges
+    private static long maxCurveDifference(List<Double> a, List<Double> b) {
+        long max = 0;
+
+        int i = 0;
+        int j = 0;
+        while (i < a.size() || j < b.size()) {
+            double time =
+                    Math.min(
+                            i < a.size() ? a.get(i) : Double.POSITIVE_INFINITY,
+                            j < b.size() ? b.get(j) : Double.POSITIVE_INFINITY);
+
+            while (i < a.size() && a.get(i) == time) {
+                i++;
+            }
+            while (j < b.size() && b.get(j) == time) {
+                j++;
+            }
+
+            max = Math.max(max, Math.abs(i - j));
+        }
+
+        return max;
+    }
+}
@@ -0,0 +1,171 @@
+package ar.edu.itba.ss.g2.simulation;
+
+import ar.edu.itba.ss.g2.model.ParticleStore;
+
+import java.util.Arrays;
+import java.util.Random;
+
+// Puts the particles that left the channel back at the inlet, x < 0.
+//
+// Only particles in the last column of the cell grid can have crossed x =
+// length: since the last rebuild no particle moved more than skin / 2, less
+// than a cell. At the inlet, only bodies that reach x < 0 can overlap a
+// particle placed there, and those are the obstacles found once, the
+// particles of the first column and the ones placed in this batch. They are
+// bucketed by y so every try only checks its bucket and the two next to it.
+//
+// The tries are the same as checking every body: a particle starts at
+// x = -radius and its y, and on an overlap draws a new y and moves back one
+// radius. The discharges of a step are placed in index order.
+class Reinsertion {
+
+    private final ParticleStore store;
+    private final CellIndexMethod cellIndexMethod;
+    private final double length;
+    private final double width;
+
+    // Obstacles that reach x < 0
+    private final int[] inletObstacles;
+
+    // Bodies of bucket b: bucketHead[b], next[bucketHead[b]], ... until -1
+    private final double bucketHeight;
+    private final int[] bucketHead;
+    private int[] next;
+
+    private int[] discharged;
+
+    Reinsertion(ParticleStore store, CellIndexMethod cellIndexMethod, double length, double width) {
+        this.store = store;
+        this.cellIndexMethod = cellIndexMethod;
+        this.length = length;
+        this.width = width;
+
+        double[] x = store.getX();
+        double[] radius = store.getRadius();
+
+        double maxRadius = 0;
+        int count = 0;
+        int[] obstacles = new int[store.getObstacleCount()];
+        for (int i = 0; i < store.size(); i++) {
+            maxRadius = Math.max(maxRadius, radius[i]);
+            if (i < store.getObstacleCount() && x[i] - radius[i] < 0) {
+                obstacles[count++] = i;
+            }
+        }
+        this.inletObstacles = Arrays.copyOf(obstacles, count);
+
+        // Two bodies in contact are at most in adjacent buckets
+        this.bucketHeight = Math.max(2 * maxRadius, Double.MIN_NORMAL);
+        int buckets = (int) Math.min(Math.ceil(width / bucketHeight), 1 << 20);
+        this.bucketHead = new int[Math.max(1, buckets)];
+        this.next = new int[store.size()];
+        this.discharged = new int[16];
+    }
+
+    // Particles past x = length, sorted, in getDischarged()
+    int findDischarged() {
+        int Mx = cellIndexMethod.getMx();
+        int My = cellIndexMethod.getMy();
+        int[] cellParticles = cellIndexMethod.getCellParticles();
+        double[] x = store.getX();
+
+        int count = 0;
+        int end = cellIndexMethod.getCellStart(Mx * My);
+        for (int k = cellIndexMethod.getCellStart((Mx - 1) * My); k < end; k++) {
+            int i = cellParticles[k];
+            if (x[i] > length) {
+                if (count == discharged.length) {
+                    discharged = Arrays.copyOf(discharged, 2 * count);
+                }
+                discharged[count++] = i;
+            }
+        }
+
+        Arrays.sort(discharged, 0, count);
+        return count;
+    }
+
+    int[] getDischarged() {
+        return discharged;
+    }
+
+    // Places the first count particles of getDischarged()
+    void reinsert(int count, Random random, StepProfiler profiler) {
+        Arrays.fill(bucketHead, -1);
+
+        for (int o : inletObstacles) {
+            addToInlet(o);
+        }
+
+        double[] x = store.getX();
+        double[] radius = store.getRadius();
+        int[] cellParticles = cellIndexMethod.getCellParticles();
+        int end = cellIndexMethod.getCellStart(cellIndexMethod.getMy());
+        for (int k = cellIndexMethod.getCellStart(0); k < end; k++) {
+            int i = cellParticles[k];
+            if (x[i] - radius[i] < 0) {
+                addToInlet(i);
+            }
+        }
+
+        for (int k = 0; k < count; k++) {
+            int i = discharged[k];
+            profiler.recordReinsertion(place(i, random));
+            addToInlet(i);
+        }
+    }
+
+    // Returns the positions tried
+    private int place(int i, Random random) {
+        double[] px = store.getX();
+        double[] py = store.getY();
+
+        double radius = store.getRadius()[i];
+        double x = -radius;
+        double y = py[i];
+
+        int tries = 1;
+        while (overlaps(i, x, y, radius)) {
+            y = radius + random.nextDouble() * (width - 2 * radius); // Try new y position
+            x -= radius;
+            tries++;
+        }
+
+        px[i] = x;
+        py[i] = y;
+        return tries;
+    }
+
+    private boolean overlaps(int i, double x, double y, double radius) {
+        double[] px = store.getX();
+        double[] py = store.getY();
+        double[] pradius = store.getRadius();
+
+        int bucket = bucket(y);
+        int last = Math.min(bucketHead.length - 1, bucket + 1);
+        for (int b = Math.max(0, bucket - 1); b <= last; b++) {
+            for (int j = bucketHead[b]; j >= 0; j = next[j]) {
+                if (j != i) {
+                    double dx = x - px[j];
+                    double dy = y - py[j];
+                    double distance = Math.sqrt(dx * dx + dy * dy);
+
+                    if (distance < radius + pradius[j]) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private void addToInlet(int i) {
+        int bucket = bucket(store.getY()[i]);
+        next[i] = bucketHead[bucket];
+        bucketHead[bucket] = i;
+    }
+
+    private int bucket(double y) {
+        return Math.min(bucketHead.length - 1, Math.max(0, (int) (y / bucketHeight)));
+    }
+}
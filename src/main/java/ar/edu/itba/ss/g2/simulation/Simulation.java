@@ -1,388 +1,587 @@
 package ar.edu.itba.ss.g2.simulation;
 
+import ar.edu.itba.ss.g2.config.ClogPolicy;
+import ar.edu.itba.ss.g2.config.Config;
 import ar.edu.itba.ss.g2.model.Particle;
-
+import ar.edu.itba.ss.g2.model.ParticleStore;
+import ar.edu.itba.ss.g2.util.AsyncSnapshotWriter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
 import java.util.*;
+import java.util.function.BiFunction;
+
+public class Simulation implements AutoCloseable {
 
-public class Simulation {
+    // Receives the checkpoints taken during run(), see Checkpoint
+    public interface CheckpointListener {
+        void onCheckpoint(Checkpoint checkpoint) throws IOException;
+    }
 
-    private static final int X = 0;
-    private static final int Y = 1;
+    // Windows measured in the steady state before trusting their variance
+    private static final int MIN_CONFIDENCE_BATCHES = 5;
 
-    private final List<Particle> particles;
-    private final List<Particle> obstaclesAndParticles;
+    // Half width of the 95% confidence interval in standard errors
+    private static final double Z_95 = 1.96;
 
-    private List<Double>[] previousForces;
-    private List<Double>[] currentForces;
+    private final ParticleStore store;
 
     private final double width;
     private final double length;
-    private final double acceleration;
-    private final double normalK;
-    private final double gamma;
-    private final double tangentialK;
     private final double integrationStep;
     private final double snapshotStep;
     private final double maxTime;
-    private final CellIndexMethod cellIndexMethod;
-
-    private final Random random;
 
+    // 0 disables each stopping criterion
+    private final double targetConfidence;
+    private final long stopDischarges;
+
+    // The channel is clogged when nothing was discharged for clogInterval and
+    // the mean kinetic energy per particle is below clogEnergy. 0 disables it
+    private final double clogInterval;
+    private final double clogEnergy;
+    private final ClogPolicy clogPolicy;
+    private final double particleRadius;
+    private double kickSpeed;
+    private double nextClogCheck;
+
+    // Checkpoints every checkpointInterval of simulated time and/or
+    // checkpointWallInterval seconds, 0 disables each
+    private final double checkpointInterval;
+    private final double checkpointWallInterval;
+    private double nextCheckpointTime;
+    private long lastCheckpointNanos;
+    private CheckpointListener checkpointListener;
+
+    private final ForceEngine forceEngine;
+    private final Integrator integrator;
+    private final Reinsertion reinsertion;
+    private final StepProfiler profiler;
+
+    // null with a fixed integration step
+    private final TimeStepController timeStepController;
+
+    // Replaced by the one saved in a checkpoint
+    private Random random;
+
+    // Time is rebuilt from integer counts so it doesn't drift from the
+    // snapshot grid: steps * dt with a fixed step, and the adaptive steps
+    // are shortened to land exactly on snapshotCount * snapshotStep
     private double currentTime;
+    private long steps;
+    private int snapshotCount;
+    private StopReason stopReason;
+
+    // Later runs continue from where the last one, or a checkpoint, left off
+    private boolean started;
 
     // ==== Output ===
-    private final List<List<Particle>> snapshots;
+    // null when snapshots are not saved
+    private final AsyncSnapshotWriter snapshotWriter;
     private final List<Double> dischargeTimes;
+    private final FlowAnalytics flowAnalytics;
+    private final List<ClogEvent> clogEvents;
+
+    public Simulation(
+            List<Particle> particles, List<Particle> obstacles, Config config, Random random) {
+        this(particles, obstacles, config, random, null);
+    }
 
     public Simulation(
             List<Particle> particles,
             List<Particle> obstacles,
-            double width,
-            double length,
-            double acceleration,
-            double normalK,
-            double gamma,
-            double tangentialK,
-            double integrationStep,
-            double snapshotStep,
-            double maxTime,
-            Random random) {
-
-        this.particles = particles;
-        this.obstaclesAndParticles = new ArrayList<>(particles.size() + obstacles.size());
-        this.obstaclesAndParticles.addAll(obstacles);
-        this.obstaclesAndParticles.addAll(particles);
-
-        int snapshotCount = (int) Math.ceil(maxTime / snapshotStep);
-        this.snapshots = new ArrayList<>(snapshotCount);
-        this.dischargeTimes = new ArrayList<>();
+            Config config,
+            Random random,
+            AsyncSnapshotWriter snapshotWriter) {
+        this(
+                particles,
+                obstacles,
+                config,
+                random,
+                snapshotWriter,
+                (store, integrator) -> integrator);
+    }
 
-        this.width = width;
-        this.length = length;
-        this.acceleration = acceleration;
-        this.normalK = normalK;
-        this.gamma = gamma;
-        this.tangentialK = tangentialK;
-        this.integrationStep = integrationStep;
-        this.snapshotStep = snapshotStep;
-        this.maxTime = maxTime;
-        this.cellIndexMethod = new CellIndexMethod(length, width, 3 * particles.get(0).getRadius());
+    // wrapIntegrator receives the store and the integrator of the Config, see
+    // FloatStateIntegrator
+    Simulation(
+            List<Particle> particles,
+            List<Particle> obstacles,
+            Config config,
+            Random random,
+            AsyncSnapshotWriter snapshotWriter,
+            BiFunction<ParticleStore, Integrator, Integrator> wrapIntegrator) {
+
+        this.store = new ParticleStore(obstacles, particles);
+
+        this.width = config.getWidth();
+        this.length = config.getLength();
+        this.integrationStep = config.getIntegrationStep();
+        this.snapshotStep = config.getSnapshotStep();
+        this.maxTime = config.getMaxTime();
+        this.targetConfidence = config.getTargetConfidence();
+        this.stopDischarges = config.getStopDischarges();
+        this.clogInterval = config.getClogInterval();
+        this.clogEnergy = config.getClogEnergy();
+        this.clogPolicy = config.getClogPolicy();
+        this.particleRadius = config.getParticleRadius();
+        // Speed gained along one particle diameter under the driving force
+        this.kickSpeed = Math.sqrt(2 * config.getAcceleration() * 2 * particleRadius);
+        this.checkpointInterval = config.getCheckpointInterval();
+        this.checkpointWallInterval = config.getCheckpointWallInterval();
+        this.forceEngine =
+                new ForceEngine(
+                        store,
+                        new VerletList(store, length, width, config.getSkin()),
+                        width,
+                        config.getAcceleration(),
+                        config.getNormalK(),
+                        config.getGamma(),
+                        config.getTangentialK(),
+                        config.getThreads(),
+                        config.getForceKernel());
+        this.reinsertion =
+                new Reinsertion(
+                        store, forceEngine.getVerletList().getCellIndexMethod(), length, width);
+        this.profiler = config.isProfile() ? new StepProfiler() : StepProfiler.DISABLED;
+        forceEngine.setProfiler(profiler);
+        this.integrator =
+                wrapIntegrator.apply(
+                        store,
+                        switch (config.getIntegrator()) {
+                            case BEEMAN -> new BeemanIntegrator(store, forceEngine);
+                            case VELOCITY_VERLET -> new VelocityVerletIntegrator(
+                                    store, forceEngine);
+                        });
+        this.timeStepController =
+                config.isAdaptiveStep()
+                        ? new TimeStepController(
+                                store,
+                                forceEngine,
+                                config.getMinIntegrationStep(),
+                                config.getMaxIntegrationStep(),
+                                config.getNormalK(),
+                                config.getGamma(),
+                                config.getTangentialK())
+                        : null;
         this.random = random;
+
+        this.snapshotWriter = snapshotWriter;
+        this.dischargeTimes = new ArrayList<>();
+        this.flowAnalytics = new FlowAnalytics(config.getFlowWindow());
+        this.clogEvents = new ArrayList<>();
     }
 
     public void run() {
-        // Initialize forces
-        // TODO: Fuerza anterior
-        previousForces = calculateForces();
-        currentForces = calculateForces();
+        run(maxTime, true);
+    }
 
-        takeSnapshot();
+    // Continues until endTime, only a clog stops it earlier
+    public void runUntil(double endTime) {
+        run(endTime, false);
+    }
 
-        currentTime = 0;
-        double elapsed = 0;
+    private void run(double endTime, boolean stopConditions) {
+        long runStart = profiler.start();
 
-        while (currentTime < maxTime) {
-            integrate();
+        if (!started) {
+            initialize();
 
-            checkDischarges();
+            currentTime = 0;
+            steps = 0;
+            snapshotCount = 0;
+            nextClogCheck = clogInterval;
 
-            currentTime += integrationStep;
-            elapsed += integrationStep;
-
-            if (elapsed >= snapshotStep) {
-                System.out.println("Time: " + currentTime);
-                takeSnapshot();
-                elapsed = 0;
-            }
+            takeSnapshot();
+            started = true;
         }
-    }
 
-    public List<List<Particle>> getSnapshots() {
-        return snapshots;
-    }
+        nextCheckpointTime = currentTime + checkpointInterval;
+        lastCheckpointNanos = System.nanoTime();
 
-    public List<Double> getDischargeTimes() {
-        return dischargeTimes;
-    }
+        long stepsPerSnapshot = Math.max(1, Math.round(snapshotStep / integrationStep));
 
-    // ========= Forces ==================
+        while ((stopReason = checkStop(endTime, stopConditions)) == null) {
+            double nextSnapshotTime = (snapshotCount + 1) * snapshotStep;
 
-    // First index x, second index y
-    @SuppressWarnings("unchecked")
-    private List<Double>[] calculateForces() {
-        List<Double>[] forces = (List<Double>[]) new List[2];
-        forces[X] = new ArrayList<>(particles.size());
-        forces[Y] = new ArrayList<>(particles.size());
+            double dt =
+                    timeStepController == null
+                            ? integrationStep
+                            : nextAdaptiveStep(nextSnapshotTime - currentTime);
 
-        Map<Particle, Set<Particle>> neighbours =
-                cellIndexMethod.getNeighbours(obstaclesAndParticles);
+            integrator.step(dt);
 
-        // Constant acceleration
-        for (Particle particle : particles) {
-            double[] force = {acceleration * particle.getMass(), 0};
+            if (profiler.isEnabled()) {
+                forceEngine.recordContacts();
+            }
 
+            long start = profiler.start();
+            checkDischarges();
+            profiler.stop(StepProfiler.Phase.DISCHARGES, start);
 
-            double[] particleForces =
-                    calculateParticleCollision(particle, neighbours.get(particle));
-            double[] wallForces = calculateHorizontalWallCollision(particle);
+            steps++;
 
-            force[X] += particleForces[X] + wallForces[X];
-            force[Y] += particleForces[Y] + wallForces[Y];
+            boolean snapshot;
+            if (timeStepController == null) {
+                currentTime = steps * integrationStep;
+                snapshot = steps % stepsPerSnapshot == 0;
+            } else {
+                timeStepController.record(dt);
+                snapshot = dt == nextSnapshotTime - currentTime;
+                currentTime = snapshot ? nextSnapshotTime : currentTime + dt;
+            }
+
+            // Closes the flow rate bins that ended with this step
+            flowAnalytics.advance(currentTime);
+
+            if (clogInterval > 0) {
+                checkClog();
+            }
 
-            forces[X].add(force[X]);
-            forces[Y].add(force[Y]);
+            if (snapshot) {
+                snapshotCount++;
+                System.out.println("Time: " + currentTime);
+                start = profiler.start();
+                takeSnapshot();
+                profiler.stop(StepProfiler.Phase.SNAPSHOTS, start);
+            }
+
+            if (checkpointListener != null && isCheckpointDue()) {
+                try {
+                    checkpointListener.onCheckpoint(createCheckpoint());
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Error while writing a checkpoint", e);
+                }
+            }
         }
 
-        return forces;
+        profiler.recordRun(runStart);
     }
 
-    // - Particle
+    private boolean isCheckpointDue() {
+        boolean due =
+                (checkpointInterval > 0 && currentTime >= nextCheckpointTime)
+                        || (checkpointWallInterval > 0
+                                && System.nanoTime() - lastCheckpointNanos
+                                        >= checkpointWallInterval * 1e9);
 
-    private double[] calculateParticleCollision(Particle particle, Set<Particle> neighbours) {
-        double radius = particle.getRadius();
+        if (due) {
+            nextCheckpointTime = currentTime + checkpointInterval;
+            lastCheckpointNanos = System.nanoTime();
+        }
+        return due;
+    }
 
-        double x = particle.getX();
-        double y = particle.getY();
+    // Changes the acceleration of the particles from the next step on
+    public void setAcceleration(double acceleration) {
+        forceEngine.setAcceleration(acceleration);
+        kickSpeed = Math.sqrt(2 * acceleration * 2 * particleRadius);
+    }
 
-        double vx = particle.getVx();
-        double vy = particle.getVy();
+    public StepProfiler getProfiler() {
+        return profiler;
+    }
 
-        double[] forces = new double[2];
+    public void setCheckpointListener(CheckpointListener checkpointListener) {
+        this.checkpointListener = checkpointListener;
+    }
 
-        for (Particle neighbour : neighbours) {
-            if (neighbour.equals(particle)) {
-                continue;
-            }
+    // ======= Checkpoints ================
+
+    public Checkpoint createCheckpoint() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
 
-            double dx = x - neighbour.getX();
-            double dy = y - neighbour.getY();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(store.getObstacleCount());
+            out.writeInt(store.getParticleCount());
+            Checkpoint.writeArray(out, store.getX());
+            Checkpoint.writeArray(out, store.getY());
+            Checkpoint.writeArray(out, store.getVx());
+            Checkpoint.writeArray(out, store.getVy());
 
-            double distance = Math.sqrt(Math.pow(dx, 2) + Math.pow(dy, 2));
-            double overlap = radius + neighbour.getRadius() - distance;
+            out.writeDouble(currentTime);
+            out.writeLong(steps);
+            out.writeInt(snapshotCount);
+            out.writeDouble(nextClogCheck);
+            out.writeDouble(forceEngine.getAcceleration());
 
-            if (overlap <= 0) {
-                continue;
+            out.writeInt(dischargeTimes.size());
+            for (double time : dischargeTimes) {
+                out.writeDouble(time);
             }
 
-            double[] normal = {dx / distance, dy / distance};
-            double[] tangential = {-normal[Y], normal[X]};
+            out.writeInt(clogEvents.size());
+            for (ClogEvent clogEvent : clogEvents) {
+                out.writeDouble(clogEvent.time());
+                out.writeDouble(clogEvent.kineticEnergy());
+                out.writeUTF(clogEvent.action().getName());
+            }
 
-            // Relative velocities
+            // Random has no other way to save its seed
+            ByteArrayOutputStream randomBytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream objectOut = new ObjectOutputStream(randomBytes)) {
+                objectOut.writeObject(random);
+            }
+            out.writeInt(randomBytes.size());
+            out.write(randomBytes.toByteArray());
+
+            integrator.writeState(out);
+            forceEngine.getVerletList().writeState(out);
+            flowAnalytics.writeState(out);
+            if (timeStepController != null) {
+                timeStepController.writeState(out);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
 
-            double relativeVx = vx - neighbour.getVx();
-            double relativeVy = vy - neighbour.getVy();
+        return new Checkpoint(
+                snapshotWriter != null ? snapshotCount + 1 : 0,
+                flowAnalytics.getSamples(),
+                bytes.toByteArray());
+    }
 
-            // overlap rate change
-            double relativeVNormal = relativeVx * normal[X] + relativeVy * normal[Y];
-            double relativeVTangential = relativeVx * tangential[X] + relativeVy * tangential[Y];
+    // The simulation must have been created with the same Config
+    public void restore(Checkpoint checkpoint) throws IOException {
+        try (DataInputStream in =
+                new DataInputStream(new ByteArrayInputStream(checkpoint.state()))) {
 
-            // Forces
+            if (in.readInt() != store.getObstacleCount()
+                    || in.readInt() != store.getParticleCount()) {
+                throw new IOException("Checkpoint doesn't match the simulation");
+            }
+            Checkpoint.readArray(in, store.getX());
+            Checkpoint.readArray(in, store.getY());
+            Checkpoint.readArray(in, store.getVx());
+            Checkpoint.readArray(in, store.getVy());
+
+            currentTime = in.readDouble();
+            steps = in.readLong();
+            snapshotCount = in.readInt();
+            nextClogCheck = in.readDouble();
+            setAcceleration(in.readDouble());
+
+            dischargeTimes.clear();
+            int discharges = in.readInt();
+            for (int i = 0; i < discharges; i++) {
+                dischargeTimes.add(in.readDouble());
+            }
+
+            clogEvents.clear();
+            int clogs = in.readInt();
+            for (int i = 0; i < clogs; i++) {
+                double time = in.readDouble();
+                double kineticEnergy = in.readDouble();
+                clogEvents.add(
+                        new ClogEvent(time, kineticEnergy, ClogPolicy.fromName(in.readUTF())));
+            }
 
-            double normalForce = -normalK * overlap + gamma * relativeVNormal;
-            double tangentialForce = -tangentialK * overlap * relativeVTangential;
+            byte[] randomBytes = new byte[in.readInt()];
+            in.readFully(randomBytes);
+            try (ObjectInputStream objectIn =
+                    new ObjectInputStream(new ByteArrayInputStream(randomBytes))) {
+                random = (Random) objectIn.readObject();
+            } catch (ClassNotFoundException e) {
+                throw new IOException("Invalid checkpoint", e);
+            }
 
-            forces[X] += normalForce * -normal[X] + tangentialForce * tangential[X];
-            forces[Y] += normalForce * -normal[Y] + tangentialForce * tangential[Y];
+            integrator.readState(in);
+            forceEngine.getVerletList().readState(in, store);
+            flowAnalytics.readState(in);
+            if (timeStepController != null) {
+                timeStepController.readState(in);
+            }
         }
 
-        return forces;
+        started = true;
     }
 
-    // - Horizontal Wall
-
-    private double[] calculateHorizontalWallCollision(Particle particle) {
-        double[] forces = new double[2];
-
-        double y = particle.getY();
-        double radius = particle.getRadius();
+    private StopReason checkStop(double endTime, boolean stopConditions) {
+        if (currentTime >= endTime) {
+            return StopReason.MAX_TIME;
+        }
 
-        // Rate of overlap change
-        double vy = particle.getVy();
+        if (stopConditions
+                && stopDischarges > 0
+                && flowAnalytics.getDischarges() >= stopDischarges) {
+            return StopReason.DISCHARGES;
+        }
 
-        // Bottom wall at width=0
-        double overlap = radius - y;
-        if (overlap > 0) {
-            forces[Y] = normalK * overlap - gamma * vy;
-            return forces;
+        // The run stops at the first clog found by checkClog
+        if (clogPolicy == ClogPolicy.ABORT && !clogEvents.isEmpty()) {
+            return StopReason.CLOG;
         }
 
-        // Top wall at width=width
-        overlap = radius - (width - y);
-        if (overlap > 0) {
-            forces[Y] = -normalK * overlap - gamma * vy;
-            return forces;
+        // Relative half width of the confidence interval of the steady flow rate
+        if (stopConditions
+                && targetConfidence > 0
+                && flowAnalytics.getBatches() >= MIN_CONFIDENCE_BATCHES
+                && flowAnalytics.getSteadyFlowRate() > 0
+                && Z_95 * flowAnalytics.getStandardError()
+                        <= targetConfidence * flowAnalytics.getSteadyFlowRate()) {
+            return StopReason.CONFIDENCE;
         }
 
-        // No collision
-        return forces;
+        return null;
     }
 
-    // ======= Discharges ================
+    // Step proposed by the controller, shortened to reach the next snapshot
+    // without leaving a tiny step before it
+    private double nextAdaptiveStep(double remaining) {
+        double dt = timeStepController.next();
 
-    private void checkDischarges() {
-        for (Particle particle : particles) {
-            if (particle.getX() > length) {
-                moveToBeginning(particle);
-                dischargeTimes.add(currentTime);
-            }
+        if (dt >= remaining) {
+            return remaining;
+        }
+        if (remaining - dt < timeStepController.getSmallestAllowedStep()) {
+            return remaining / 2;
         }
+        return dt;
     }
 
-    // Function that returns the particle to
-    // the start (x=0) but avoids the particle
-    // overlapping with others and obstacles
-    private void moveToBeginning(Particle particle) {
-        double radius = particle.getRadius();
-        boolean overlapping;
-        double x = -radius;
-        double y = particle.getY();
-
-        do {
-            overlapping = false;
-            particle.setX(x);
-
-            // Check overlap with other particles
-            for (Particle other : obstaclesAndParticles) {
-                if (other != particle) {
-                    double dx = particle.getX() - other.getX();
-                    double dy = y - other.getY();
-                    double distance = Math.sqrt(dx * dx + dy * dy);
-
-                    if (distance < radius + other.getRadius()) {
-                        overlapping = true;
-                        y =
-                                radius
-                                        + random.nextDouble()
-                                                * (width - 2 * radius); // Try new y position
-                        break;
-                    }
-                }
-            }
-
-            // If still overlapping, move slightly back in x-axis
-            if (overlapping) {
-                x -= radius;
-            } else {
-                particle.setY(y); // Finalize position if no overlap
-            }
-
-        } while (overlapping);
+    // Why the last run ended, null before running
+    public StopReason getStopReason() {
+        return stopReason;
     }
 
-    // ======= Snapshots ================
-
-    private void takeSnapshot() {
-        snapshots.add(particles.stream().map(Particle::new).toList());
+    public double getCurrentTime() {
+        return currentTime;
     }
 
-    // ========== Integration =============
+    public List<ClogEvent> getClogEvents() {
+        return clogEvents;
+    }
 
-    @SuppressWarnings("unchecked")
-    private void integrate() {
-        List<Double>[] previousVelocities = (List<Double>[]) new List[2];
+    public FlowAnalytics getFlowAnalytics() {
+        return flowAnalytics;
+    }
 
-        previousVelocities[X] = new ArrayList<>(particles.size());
-        previousVelocities[Y] = new ArrayList<>(particles.size());
+    public List<Double> getDischargeTimes() {
+        return dischargeTimes;
+    }
 
-        // Positions
-        for (int i = 0; i < particles.size(); i++) {
+    ParticleStore getStore() {
+        return store;
+    }
 
-            Particle particle = particles.get(i);
+    public TimeStepController getTimeStepController() {
+        return timeStepController;
+    }
 
-            double mass = particle.getMass();
+    public VerletList getVerletList() {
+        return forceEngine.getVerletList();
+    }
 
-            // r(t)
-            double currentX = particle.getX();
-            double currentY = particle.getY();
+    void initialize() {
+        integrator.initialize();
+    }
 
-            // v(t)
-            double currentVx = particle.getVx();
-            double currentVy = particle.getVy();
+    void integrate() {
+        integrator.step(integrationStep);
+    }
 
-            // a(t)
-            double currentAx = currentForces[X].get(i) / mass;
-            double currentAy = currentForces[Y].get(i) / mass;
+    public Integrator getIntegrator() {
+        return integrator;
+    }
 
-            // a(t-dt)
-            double previousAx = previousForces[X].get(i) / mass;
-            double previousAy = previousForces[Y].get(i) / mass;
+    public ForceEngine getForceEngine() {
+        return forceEngine;
+    }
 
-            // r(t+dt)
-            double nextX =
-                    currentX
-                            + currentVx * integrationStep
-                            + (2.0 / 3.0) * currentAx * Math.pow(integrationStep, 2)
-                            - (1.0 / 6.0) * previousAx * Math.pow(integrationStep, 2);
+    // Releases the threads of the force evaluation, the results can still be
+    // read afterwards
+    @Override
+    public void close() {
+        forceEngine.close();
+    }
 
-            double nextY =
-                    currentY
-                            + currentVy * integrationStep
-                            + (2.0 / 3.0) * currentAy * Math.pow(integrationStep, 2)
-                            - (1.0 / 6.0) * previousAy * Math.pow(integrationStep, 2);
+    // Kinetic energy of the particles plus the elastic energy of the contacts,
+    // read-only so it can be measured between steps
+    double getEnergy() {
+        return getKineticEnergy() + forceEngine.getElasticEnergy();
+    }
 
-            // predicted v(t+dt)
-            double predictedVx =
-                    currentVx
-                            + (3.0 / 2.0) * currentAx * integrationStep
-                            - (1.0 / 2.0) * previousAx * integrationStep;
+    private double getKineticEnergy() {
+        double[] vx = store.getVx();
+        double[] vy = store.getVy();
+        double[] mass = store.getMass();
 
-            double predictedVy =
-                    currentVy
-                            + (3.0 / 2.0) * currentAy * integrationStep
-                            - (1.0 / 2.0) * previousAy * integrationStep;
+        double kinetic = 0;
+        for (int i = store.getFirstParticle(); i < store.size(); i++) {
+            kinetic += 0.5 * mass[i] * (vx[i] * vx[i] + vy[i] * vy[i]);
+        }
 
-            particle.setX(nextX);
-            particle.setY(nextY);
+        return kinetic;
+    }
 
-            previousVelocities[X].add(currentVx);
-            previousVelocities[Y].add(currentVy);
+    // ======= Clogs ================
 
-            particle.setVx(predictedVx);
-            particle.setVy(predictedVy);
+    // Records a ClogEvent and, with PERTURB, kicks the particles. The kinetic
+    // energy is only computed once nothing left for clogInterval, and then
+    // every tenth of it
+    private void checkClog() {
+        if (currentTime < nextClogCheck) {
+            return;
         }
 
-        List<Double>[] nextForces = calculateForces();
-
-        // Correct velocities
-        for (int i = 0; i < particles.size(); i++) {
+        double kineticEnergy = getKineticEnergy() / store.getParticleCount();
+        if (kineticEnergy >= clogEnergy) {
+            nextClogCheck = currentTime + clogInterval / 10;
+            return;
+        }
 
-            Particle particle = particles.get(i);
+        clogEvents.add(new ClogEvent(currentTime, kineticEnergy, clogPolicy));
 
-            double mass = particle.getMass();
+        if (clogPolicy == ClogPolicy.PERTURB) {
+            perturb();
+            nextClogCheck = currentTime + clogInterval;
+        }
+    }
 
-            // v(t)
-            double currentVx = previousVelocities[X].get(i);
-            double currentVy = previousVelocities[Y].get(i);
+    // Random velocity kick to every mobile particle. The forces depend on the
+    // velocities, so the integrator starts again from the kicked state instead
+    // of keeping the forces and history of the last step
+    private void perturb() {
+        double[] vx = store.getVx();
+        double[] vy = store.getVy();
+
+        for (int i = store.getFirstParticle(); i < store.size(); i++) {
+            double angle = 2 * Math.PI * random.nextDouble();
+            vx[i] += kickSpeed * Math.cos(angle);
+            vy[i] += kickSpeed * Math.sin(angle);
+        }
 
-            // a(t-dt), a(t), a(t+dt)
-            double previousAx = previousForces[X].get(i) / mass;
-            double currentAx = currentForces[X].get(i) / mass;
-            double nextAx = nextForces[X].get(i) / mass;
+        integrator.initialize();
+    }
 
-            double previousAy = previousForces[Y].get(i) / mass;
-            double currentAy = currentForces[Y].get(i) / mass;
-            double nextAy = nextForces[Y].get(i) / mass;
+    // ======= Discharges ================
 
-            // corrected v(t+dt)
-            double correctedVx =
-                    currentVx
-                            + (1.0 / 3.0) * nextAx * integrationStep
-                            + (5.0 / 6.0) * currentAx * integrationStep
-                            - (1.0 / 6.0) * previousAx * integrationStep;
+    private void checkDischarges() {
+        int discharged = reinsertion.findDischarged();
+        if (discharged == 0) {
+            return;
+        }
 
-            double correctedVy =
-                    currentVy
-                            + (1.0 / 3.0) * nextAy * integrationStep
-                            + (5.0 / 6.0) * currentAy * integrationStep
-                            - (1.0 / 6.0) * previousAy * integrationStep;
+        reinsertion.reinsert(discharged, random, profiler);
 
-            particle.setVx(correctedVx);
-            particle.setVy(correctedVy);
+        for (int k = 0; k < discharged; k++) {
+            dischargeTimes.add(currentTime);
+            flowAnalytics.record(currentTime);
         }
+        nextClogCheck = currentTime + clogInterval;
+    }
 
-        previousForces = currentForces;
+    // ======= Snapshots ================
 
-        // Recalculate forces as velocities have changed
-        currentForces = calculateForces();
+    private void takeSnapshot() {
+        if (snapshotWriter != null) {
+            snapshotWriter.submit(currentTime, store);
+        }
     }
 }
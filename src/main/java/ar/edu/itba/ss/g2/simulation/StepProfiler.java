@@ -0,0 +1,177 @@
+package ar.edu.itba.ss.g2.simulation;
+
+import java.util.Arrays;
+
+// Time spent in each phase of the steps, contacts and overlaps per step and
+// reinsertion tries, written to metrics.txt with --profile.
+//
+// Every measure goes to a histogram of powers of two: bucket b counts the
+// values in [2^(b-1), 2^b), bucket 0 the zeros. Disabled, start() doesn't
+// read the clock and every other call returns right away.
+public class StepProfiler {
+
+    public static final StepProfiler DISABLED = new StepProfiler(false);
+
+    public enum Phase {
+        NEIGHBOURS("neighbours"),
+        FORCES("forces"),
+        PREDICTOR("predictor"),
+        CORRECTOR("corrector"),
+        DISCHARGES("discharges"),
+        SNAPSHOTS("snapshots");
+
+        private final String name;
+
+        Phase(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+
+    public static class Histogram {
+        private final long[] buckets = new long[Long.SIZE + 1];
+        private long count;
+        private long total;
+        private long max;
+
+        private void record(long value) {
+            buckets[Long.SIZE - Long.numberOfLeadingZeros(value)]++;
+            count++;
+            total += value;
+            max = Math.max(max, value);
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getTotal() {
+            return total;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        public double getMean() {
+            return count > 0 ? (double) total / count : 0;
+        }
+
+        // Up to the last bucket that isn't empty
+        public long[] getBuckets() {
+            int last = buckets.length;
+            while (last > 0 && buckets[last - 1] == 0) {
+                last--;
+            }
+            return Arrays.copyOf(buckets, last);
+        }
+    }
+
+    private final boolean enabled;
+
+    // Wall time inside Simulation.run, every phase included
+    private long runNanos;
+
+    // Nanoseconds of each call
+    private final Histogram[] phases;
+
+    private final Histogram contacts;
+    private double maxOverlap;
+    private double totalOverlap;
+
+    private long reinsertions;
+    private final Histogram reinsertionTries;
+
+    public StepProfiler() {
+        this(true);
+    }
+
+    private StepProfiler(boolean enabled) {
+        this.enabled = enabled;
+        this.phases = new Histogram[Phase.values().length];
+        for (int p = 0; p < phases.length; p++) {
+            phases[p] = new Histogram();
+        }
+        this.contacts = new Histogram();
+        this.reinsertionTries = new Histogram();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    // start: what start() returned when the phase began
+    public void stop(Phase phase, long start) {
+        if (!enabled) {
+            return;
+        }
+        phases[phase.ordinal()].record(System.nanoTime() - start);
+    }
+
+    // start: what start() returned when the run began
+    public void recordRun(long start) {
+        if (!enabled) {
+            return;
+        }
+        runNanos += System.nanoTime() - start;
+    }
+
+    public void recordStep(int contactCount, double overlap) {
+        if (!enabled) {
+            return;
+        }
+        contacts.record(contactCount);
+        maxOverlap = Math.max(maxOverlap, overlap);
+        totalOverlap += overlap;
+    }
+
+    // tries: positions tested until the particle fit
+    public void recordReinsertion(int tries) {
+        if (!enabled) {
+            return;
+        }
+        reinsertions++;
+        reinsertionTries.record(tries);
+    }
+
+    public long getRunNanos() {
+        return runNanos;
+    }
+
+    public Histogram getPhase(Phase phase) {
+        return phases[phase.ordinal()];
+    }
+
+    // Contacts at the end of each step, one sample per step
+    public Histogram getContacts() {
+        return contacts;
+    }
+
+    public long getSteps() {
+        return contacts.getCount();
+    }
+
+    // Largest overlap at the end of any step
+    public double getMaxOverlap() {
+        return maxOverlap;
+    }
+
+    public double getMeanMaxOverlap() {
+        return getSteps() > 0 ? totalOverlap / getSteps() : 0;
+    }
+
+    public long getReinsertions() {
+        return reinsertions;
+    }
+
+    public Histogram getReinsertionTries() {
+        return reinsertionTries;
+    }
+}
@@ -0,0 +1,18 @@
+package ar.edu.itba.ss.g2.simulation;
+
+public enum StopReason {
+    MAX_TIME("max-time"),
+    CONFIDENCE("confidence"),
+    DISCHARGES("discharges"),
+    CLOG("clog");
+
+    private final String name;
+
+    StopReason(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+}
@@ -0,0 +1,151 @@
+package ar.edu.itba.ss.g2.simulation;
+
+import ar.edu.itba.ss.g2.model.ParticleStore;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+// Chooses the integration step from the current state, between the minimum
+// and maximum steps given by the user:
+// - while there are contacts, a fraction of the duration of a contact
+//   (from k_n, gamma and the reduced mass) and of the relaxation time of the
+//   damping, which grows with the tangential force of the largest overlap
+// - always, the time needed to approach a fraction of a radius at the
+//   largest speed, so a fast particle can't go deep into another in one step
+// The step is rounded down to maxStep / 2^k, so it only changes when the
+// state crosses one of those levels.
+public class TimeStepController {
+
+    private static final double STEPS_PER_CONTACT = 50;
+    private static final double DAMPING_FRACTION = 0.1;
+    private static final double APPROACH_FRACTION = 0.05;
+
+    private final ParticleStore store;
+    private final ForceEngine forceEngine;
+
+    private final double minStep;
+    private final double maxStep;
+
+    private final double gamma;
+    private final double tangentialK;
+    private final double reducedMass;
+    private final double minRadius;
+
+    // Limit given by the duration of a contact, constant for the run
+    private final double contactStep;
+
+    // Statistics
+    private long steps;
+    private double totalTime;
+    private double smallestStep = Double.POSITIVE_INFINITY;
+    private double largestStep;
+
+    public TimeStepController(
+            ParticleStore store,
+            ForceEngine forceEngine,
+            double minStep,
+            double maxStep,
+            double normalK,
+            double gamma,
+            double tangentialK) {
+        this.store = store;
+        this.forceEngine = forceEngine;
+        this.minStep = minStep;
+        this.maxStep = maxStep;
+        this.gamma = gamma;
+        this.tangentialK = tangentialK;
+
+        double minMass = Double.POSITIVE_INFINITY;
+        double minRadius = Double.POSITIVE_INFINITY;
+        for (int i = store.getFirstParticle(); i < store.size(); i++) {
+            minMass = Math.min(minMass, store.getMass()[i]);
+            minRadius = Math.min(minRadius, store.getRadius()[i]);
+        }
+
+        // Two equal particles, the smallest reduced mass of any contact
+        this.reducedMass = minMass / 2;
+        this.minRadius = minRadius;
+
+        // Damped oscillator, overdamped contacts last about the undamped period
+        double omega2 = normalK / reducedMass - Math.pow(gamma / (2 * reducedMass), 2);
+        double omega = Math.sqrt(omega2 > 0 ? omega2 : normalK / reducedMass);
+        this.contactStep = Math.PI / omega / STEPS_PER_CONTACT;
+    }
+
+    public double next() {
+        double maxSpeed = 0;
+        double[] vx = store.getVx();
+        double[] vy = store.getVy();
+        for (int i = store.getFirstParticle(); i < store.size(); i++) {
+            maxSpeed = Math.max(maxSpeed, vx[i] * vx[i] + vy[i] * vy[i]);
+        }
+        maxSpeed = Math.sqrt(maxSpeed);
+
+        double step = maxStep;
+
+        // Two particles approaching head on
+        if (maxSpeed > 0) {
+            step = Math.min(step, APPROACH_FRACTION * minRadius / (2 * maxSpeed));
+        }
+
+        double maxOverlap = forceEngine.getMaxOverlap();
+        if (maxOverlap > 0) {
+            step = Math.min(step, contactStep);
+            step =
+                    Math.min(
+                            step,
+                            DAMPING_FRACTION * reducedMass / (gamma + tangentialK * maxOverlap));
+        }
+
+        // maxStep / 2^k, without going under the minimum
+        double quantized = maxStep;
+        while (quantized > step && quantized / 2 >= minStep) {
+            quantized /= 2;
+        }
+
+        return Math.max(quantized, minStep);
+    }
+
+    public double getSmallestAllowedStep() {
+        return minStep;
+    }
+
+    // Steps actually taken, which can be shorter to land on a snapshot
+    public void record(double step) {
+        steps++;
+        totalTime += step;
+        smallestStep = Math.min(smallestStep, step);
+        largestStep = Math.max(largestStep, step);
+    }
+
+    void writeState(DataOutput out) throws IOException {
+        out.writeLong(steps);
+        out.writeDouble(totalTime);
+        out.writeDouble(smallestStep);
+        out.writeDouble(largestStep);
+    }
+
+    void readState(DataInput in) throws IOException {
+        steps = in.readLong();
+        totalTime = in.readDouble();
+        smallestStep = in.readDouble();
+        largestStep = in.readDouble();
+    }
+
+    public long getSteps() {
+        return steps;
+    }
+
+    public double getMeanStep() {
+        return steps == 0 ? 0 : totalTime / steps;
+    }
+
+    public double getSmallestStep() {
+        return smallestStep;
+    }
+
+    public double getLargestStep() {
+        return largestStep;
+    }
+}
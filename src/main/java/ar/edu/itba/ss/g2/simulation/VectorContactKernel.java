@@ -0,0 +1,128 @@
+package ar.edu.itba.ss.g2.simulation;
+
+import ar.edu.itba.ss.g2.model.ParticleStore;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+// ForceEngine.calculateContact over as many pairs at a time as the CPU has
+// lanes. The differences between the bodies of each pair are first packed
+// side by side, lanes that don't overlap are masked to zero, and every
+// operation is the one of the scalar code, in the same order and without
+// fused multiply-adds, so the forces are the same bit for bit.
+//
+// Only loaded when jdk.incubator.vector is in the boot layer, see ForceEngine.
+class VectorContactKernel {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    private final ParticleStore store;
+    private final double normalK;
+    private final double gamma;
+    private final double tangentialK;
+
+    // Packed pairs, indexed like the pairs
+    private double[] dx;
+    private double[] dy;
+    private double[] radiusSum;
+    private double[] relativeVx;
+    private double[] relativeVy;
+
+    VectorContactKernel(ParticleStore store, double normalK, double gamma, double tangentialK) {
+        this.store = store;
+        this.normalK = normalK;
+        this.gamma = gamma;
+        this.tangentialK = tangentialK;
+
+        this.dx = new double[0];
+        this.dy = new double[0];
+        this.radiusSum = new double[0];
+        this.relativeVx = new double[0];
+        this.relativeVy = new double[0];
+    }
+
+    // Must hold every pair before calculate runs, calculate itself may run on
+    // several threads at once over different pairs
+    void ensureCapacity(int pairs) {
+        if (dx.length < pairs) {
+            dx = new double[2 * pairs];
+            dy = new double[2 * pairs];
+            radiusSum = new double[2 * pairs];
+            relativeVx = new double[2 * pairs];
+            relativeVy = new double[2 * pairs];
+        }
+    }
+
+    // Force on pairI[k] of the pairs from ... to - 1 in outX[k] and outY[k].
+    // Returns the first pair of the tail left for the scalar code.
+    int calculate(int[] pairI, int[] pairJ, int from, int to, double[] outX, double[] outY) {
+        int end = from + SPECIES.loopBound(to - from);
+
+        pack(pairI, pairJ, from, end);
+
+        DoubleVector zero = DoubleVector.zero(SPECIES);
+
+        for (int k = from; k < end; k += SPECIES.length()) {
+            DoubleVector dx = DoubleVector.fromArray(SPECIES, this.dx, k);
+            DoubleVector dy = DoubleVector.fromArray(SPECIES, this.dy, k);
+
+            DoubleVector distance = dx.mul(dx).add(dy.mul(dy)).sqrt();
+            DoubleVector overlap = DoubleVector.fromArray(SPECIES, radiusSum, k).sub(distance);
+
+            VectorMask<Double> contact = overlap.compare(VectorOperators.GT, 0);
+            if (!contact.anyTrue()) {
+                zero.intoArray(outX, k);
+                zero.intoArray(outY, k);
+                continue;
+            }
+
+            DoubleVector normalX = dx.div(distance);
+            DoubleVector normalY = dy.div(distance);
+            DoubleVector tangentialX = normalY.neg();
+            DoubleVector tangentialY = normalX;
+
+            // Relative velocities
+
+            DoubleVector relativeVx = DoubleVector.fromArray(SPECIES, this.relativeVx, k);
+            DoubleVector relativeVy = DoubleVector.fromArray(SPECIES, this.relativeVy, k);
+
+            DoubleVector relativeVNormal = relativeVx.mul(normalX).add(relativeVy.mul(normalY));
+            DoubleVector relativeVTangential =
+                    relativeVx.mul(tangentialX).add(relativeVy.mul(tangentialY));
+
+            // Forces
+
+            DoubleVector normalForce = overlap.mul(-normalK).add(relativeVNormal.mul(gamma));
+            DoubleVector tangentialForce = overlap.mul(-tangentialK).mul(relativeVTangential);
+
+            DoubleVector fx = normalForce.mul(normalX.neg()).add(tangentialForce.mul(tangentialX));
+            DoubleVector fy = normalForce.mul(normalY.neg()).add(tangentialForce.mul(tangentialY));
+
+            zero.blend(fx, contact).intoArray(outX, k);
+            zero.blend(fy, contact).intoArray(outY, k);
+        }
+        return end;
+    }
+
+    // Differences between the bodies of each pair, side by side so the lanes
+    // are loaded in one go instead of gathered
+    private void pack(int[] pairI, int[] pairJ, int from, int to) {
+        double[] px = store.getX();
+        double[] py = store.getY();
+        double[] pvx = store.getVx();
+        double[] pvy = store.getVy();
+        double[] pradius = store.getRadius();
+
+        for (int k = from; k < to; k++) {
+            int i = pairI[k];
+            int j = pairJ[k];
+            dx[k] = px[i] - px[j];
+            dy[k] = py[i] - py[j];
+            radiusSum[k] = pradius[i] + pradius[j];
+            relativeVx[k] = pvx[i] - pvx[j];
+            relativeVy[k] = pvy[i] - pvy[j];
+        }
+    }
+}
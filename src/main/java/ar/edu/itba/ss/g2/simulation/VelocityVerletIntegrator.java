@@ -0,0 +1,109 @@
+package ar.edu.itba.ss.g2.simulation;
+
+import ar.edu.itba.ss.g2.model.ParticleStore;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+// Velocity Verlet with a single force evaluation per step. The damping
+// depends on the velocities, so the forces at t+dt are evaluated with the
+// velocities predicted to first order, v(t) + a(t) dt, and the half step
+// velocities are then corrected with them.
+public class VelocityVerletIntegrator implements Integrator {
+
+    private static final int X = 0;
+    private static final int Y = 1;
+
+    private final ParticleStore store;
+    private final ForceEngine forceEngine;
+
+    // F(t), indexed by particle - store.getFirstParticle(). Overwritten by F(t+dt)
+    private final double[][] forces;
+
+    // v(t+dt/2)
+    private final double[][] halfStepVelocities;
+
+    public VelocityVerletIntegrator(ParticleStore store, ForceEngine forceEngine) {
+        this.store = store;
+        this.forceEngine = forceEngine;
+
+        int count = store.getParticleCount();
+        this.forces = new double[2][count];
+        this.halfStepVelocities = new double[2][count];
+    }
+
+    @Override
+    public void initialize() {
+        forceEngine.calculate(forces);
+    }
+
+    @Override
+    public int getForceEvaluationsPerStep() {
+        return 1;
+    }
+
+    @Override
+    public void writeState(DataOutput out) throws IOException {
+        Checkpoint.writeArray(out, forces[X]);
+        Checkpoint.writeArray(out, forces[Y]);
+    }
+
+    @Override
+    public void readState(DataInput in) throws IOException {
+        Checkpoint.readArray(in, forces[X]);
+        Checkpoint.readArray(in, forces[Y]);
+    }
+
+    @Override
+    public void step(double dt) {
+        int first = store.getFirstParticle();
+        int count = store.getParticleCount();
+
+        double[] px = store.getX();
+        double[] py = store.getY();
+        double[] pvx = store.getVx();
+        double[] pvy = store.getVy();
+        double[] pmass = store.getMass();
+
+        StepProfiler profiler = forceEngine.getProfiler();
+
+        long start = profiler.start();
+        for (int k = 0; k < count; k++) {
+            int i = first + k;
+
+            // a(t)
+            double ax = forces[X][k] / pmass[i];
+            double ay = forces[Y][k] / pmass[i];
+
+            // r(t+dt)
+            px[i] += pvx[i] * dt + 0.5 * ax * dt * dt;
+            py[i] += pvy[i] * dt + 0.5 * ay * dt * dt;
+
+            // v(t+dt/2)
+            halfStepVelocities[X][k] = pvx[i] + 0.5 * ax * dt;
+            halfStepVelocities[Y][k] = pvy[i] + 0.5 * ay * dt;
+
+            // predicted v(t+dt), only used by the damping
+            pvx[i] += ax * dt;
+            pvy[i] += ay * dt;
+        }
+        profiler.stop(StepProfiler.Phase.PREDICTOR, start);
+
+        forceEngine.calculate(forces);
+
+        // Correct velocities
+        start = profiler.start();
+        for (int k = 0; k < count; k++) {
+            int i = first + k;
+
+            // a(t+dt)
+            double ax = forces[X][k] / pmass[i];
+            double ay = forces[Y][k] / pmass[i];
+
+            pvx[i] = halfStepVelocities[X][k] + 0.5 * ax * dt;
+            pvy[i] = halfStepVelocities[Y][k] + 0.5 * ay * dt;
+        }
+        profiler.stop(StepProfiler.Phase.CORRECTOR, start);
+    }
+}
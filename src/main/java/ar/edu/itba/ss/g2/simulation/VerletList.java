@@ -0,0 +1,130 @@
+package ar.edu.itba.ss.g2.simulation;
+
+import ar.edu.itba.ss.g2.model.ParticleStore;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+// Neighbour lists of the CellIndexMethod extended by a skin distance. Pairs
+// closer than r_i + r_j + skin are kept, so the lists stay valid until some
+// particle moves more than skin / 2 from where it was in the last rebuild.
+// With skin = 0 the lists are rebuilt every time a particle moves.
+public class VerletList {
+
+    private final CellIndexMethod cellIndexMethod;
+    private final ObstacleIndex obstacleIndex;
+    private final double skin;
+
+    // Positions at the last rebuild
+    private final double[] referenceX;
+    private final double[] referenceY;
+    private boolean built;
+
+    // Changes every time the pairs change, including a restore, so whatever
+    // is derived from them knows when to rebuild
+    private long version;
+
+    private long updateCount;
+    private long rebuildCount;
+
+    public VerletList(ParticleStore store, double length, double width, double skin) {
+        double maxRadius = 0;
+        for (int i = store.getFirstParticle(); i < store.size(); i++) {
+            maxRadius = Math.max(maxRadius, store.getRadius()[i]);
+        }
+
+        this.skin = skin;
+        this.cellIndexMethod =
+                new CellIndexMethod(length, width, Math.max(3 * maxRadius, 2 * maxRadius + skin), skin);
+        this.obstacleIndex = new ObstacleIndex(store, cellIndexMethod, maxRadius + skin);
+
+        this.referenceX = new double[store.size()];
+        this.referenceY = new double[store.size()];
+    }
+
+    // Rebuilds the lists if they may be missing a contact, returns whether it did
+    public boolean update(ParticleStore store) {
+        updateCount++;
+
+        if (built && maxDisplacementSquared(store) <= skin * skin / 4) {
+            return false;
+        }
+
+        cellIndexMethod.computeNeighbours(store, obstacleIndex);
+
+        System.arraycopy(store.getX(), 0, referenceX, 0, store.size());
+        System.arraycopy(store.getY(), 0, referenceY, 0, store.size());
+        built = true;
+        rebuildCount++;
+        version++;
+
+        return true;
+    }
+
+    void writeState(DataOutput out) throws IOException {
+        out.writeBoolean(built);
+        Checkpoint.writeArray(out, referenceX);
+        Checkpoint.writeArray(out, referenceY);
+        out.writeLong(updateCount);
+        out.writeLong(rebuildCount);
+    }
+
+    // The lists are rebuilt from the positions of the last rebuild, which
+    // gives the same pairs in the same order as before the checkpoint
+    void readState(DataInput in, ParticleStore store) throws IOException {
+        built = in.readBoolean();
+        Checkpoint.readArray(in, referenceX);
+        Checkpoint.readArray(in, referenceY);
+        updateCount = in.readLong();
+        rebuildCount = in.readLong();
+
+        if (built) {
+            double[] x = store.getX().clone();
+            double[] y = store.getY().clone();
+
+            System.arraycopy(referenceX, 0, store.getX(), 0, store.size());
+            System.arraycopy(referenceY, 0, store.getY(), 0, store.size());
+            cellIndexMethod.computeNeighbours(store, obstacleIndex);
+
+            System.arraycopy(x, 0, store.getX(), 0, store.size());
+            System.arraycopy(y, 0, store.getY(), 0, store.size());
+        }
+        version++;
+    }
+
+    private double maxDisplacementSquared(ParticleStore store) {
+        double[] x = store.getX();
+        double[] y = store.getY();
+
+        double max = 0;
+        for (int i = store.getFirstParticle(); i < store.size(); i++) {
+            double dx = x[i] - referenceX[i];
+            double dy = y[i] - referenceY[i];
+            max = Math.max(max, dx * dx + dy * dy);
+        }
+        return max;
+    }
+
+    long getVersion() {
+        return version;
+    }
+
+    public CellIndexMethod getCellIndexMethod() {
+        return cellIndexMethod;
+    }
+
+    public double getSkin() {
+        return skin;
+    }
+
+    // Number of times the lists were requested
+    public long getUpdateCount() {
+        return updateCount;
+    }
+
+    // Number of times the lists were actually rebuilt
+    public long getRebuildCount() {
+        return rebuildCount;
+    }
+}
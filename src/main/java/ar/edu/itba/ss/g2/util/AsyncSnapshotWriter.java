@@ -0,0 +1,177 @@
+package ar.edu.itba.ss.g2.util;
+
+import ar.edu.itba.ss.g2.model.ParticleStore;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+
+// Streams snapshots to disk while the simulation runs. The simulation copies
+// each frame into a free buffer and hands it to a writer thread, which encodes
+// it and gives the buffer back. Only `capacity` frames are ever held in
+// memory, and the file is flushed whenever the writer catches up, so a run
+// that dies keeps every frame written before.
+public class AsyncSnapshotWriter implements Closeable {
+
+    private static final int DEFAULT_CAPACITY = 2;
+
+    // Marks the end of the stream in the filled queue
+    private static final Frame END = new Frame(0);
+    // Asks the writer to flush and report back through synced
+    private static final Frame SYNC = new Frame(0);
+
+    private final FrameEncoder encoder;
+    private final int particleCount;
+
+    private final BlockingQueue<Frame> free;
+    private final BlockingQueue<Frame> filled;
+    private final Thread thread;
+    private final Semaphore synced = new Semaphore(0);
+
+    private volatile IOException error;
+    private boolean closed;
+
+    public AsyncSnapshotWriter(FrameEncoder encoder, int particleCount) {
+        this(encoder, particleCount, DEFAULT_CAPACITY);
+    }
+
+    public AsyncSnapshotWriter(FrameEncoder encoder, int particleCount, int capacity) {
+        this.encoder = encoder;
+        this.particleCount = particleCount;
+
+        this.free = new ArrayBlockingQueue<>(capacity);
+        this.filled = new ArrayBlockingQueue<>(capacity + 1);
+        for (int i = 0; i < capacity; i++) {
+            free.add(new Frame(particleCount));
+        }
+
+        // Daemon so a simulation that fails doesn't wait forever on the writer
+        this.thread = new Thread(this::drain, "snapshot-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // Copies the positions of the mobile particles. Blocks while the writer is
+    // `capacity` frames behind.
+    public void submit(double time, ParticleStore store) {
+        if (error != null) {
+            throw new UncheckedIOException("Error while writing snapshots", error);
+        }
+
+        Frame frame = take(free);
+        frame.time = time;
+        System.arraycopy(store.getX(), store.getFirstParticle(), frame.x, 0, particleCount);
+        System.arraycopy(store.getY(), store.getFirstParticle(), frame.y, 0, particleCount);
+        put(filled, frame);
+    }
+
+    // Waits until every frame submitted so far is encoded and flushed
+    public void sync() throws IOException {
+        put(filled, SYNC);
+        try {
+            synced.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while writing snapshots", e);
+        }
+
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    // Waits for the pending frames and closes the file
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        put(filled, END);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        try {
+            encoder.close();
+        } catch (IOException e) {
+            if (error == null) {
+                error = e;
+            }
+        }
+
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            Frame frame = take(filled);
+            if (frame == END) {
+                return;
+            }
+            if (frame == SYNC) {
+                if (error == null) {
+                    try {
+                        encoder.flush();
+                    } catch (IOException e) {
+                        error = e;
+                    }
+                }
+                synced.release();
+                continue;
+            }
+
+            // After an error the frames are still given back so the
+            // simulation doesn't block, submit reports it
+            if (error == null) {
+                try {
+                    encoder.encode(frame.time, frame.x, frame.y);
+                    if (filled.isEmpty()) {
+                        encoder.flush();
+                    }
+                } catch (IOException e) {
+                    error = e;
+                }
+            }
+
+            put(free, frame);
+        }
+    }
+
+    private static Frame take(BlockingQueue<Frame> queue) {
+        try {
+            return queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while writing snapshots", e);
+        }
+    }
+
+    private static void put(BlockingQueue<Frame> queue, Frame frame) {
+        try {
+            queue.put(frame);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while writing snapshots", e);
+        }
+    }
+
+    private static final class Frame {
+        private double time;
+        private final double[] x;
+        private final double[] y;
+
+        private Frame(int particleCount) {
+            this.x = new double[particleCount];
+            this.y = new double[particleCount];
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package ar.edu.itba.ss.g2.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// snapshots.bin, little-endian:
+//
+//   header   "GDTR", version, N, frames, dt2, bytes per coordinate, encoding,
+//            offset of the index (0 until the file is closed)
+//            DELTA adds the tolerance (double) and keyframe interval (int)
+//   frames   time (double) followed by x y of every particle
+//   index    offset of every frame (long)
+//
+// RAW frames store the coordinates as floats or doubles. DELTA frames round
+// them to multiples of the tolerance and store the zigzag varint of the
+// difference with the previous frame, or of the rounded value itself in
+// keyframes, so reaching any frame only decodes from the previous keyframe.
+//
+// The frame count in the header is rewritten after every flush, so the frames
+// of an interrupted run can still be read without the index.
+public class BinaryFrameEncoder implements FrameEncoder {
+
+    static final int MAGIC = 0x52544447; // "GDTR"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 40;
+    static final int DELTA_HEADER_SIZE = 56;
+
+    static final int FRAME_COUNT_OFFSET = 12;
+    static final int INDEX_OFFSET_OFFSET = 32;
+
+    static final int RAW = 0;
+    static final int DELTA = 1;
+
+    private final FileChannel channel;
+    private final int particleCount;
+    private final int precision;
+    private final int encoding;
+    private final ByteBuffer frame;
+    private final ByteBuffer field;
+
+    // DELTA: coordinates of the last frame in multiples of the tolerance
+    private final double tolerance;
+    private final int keyframeInterval;
+    private final long[] previousX;
+    private final long[] previousY;
+
+    private long[] offsets;
+    private int frameCount;
+    private long position;
+
+    // precision: 32 or 64 bits per coordinate
+    public BinaryFrameEncoder(Path file, int particleCount, double snapshotStep, int precision)
+            throws IOException {
+        this(file, particleCount, snapshotStep, precision / 8, RAW, 0, 0);
+    }
+
+    // Positions are rounded to multiples of tolerance, every keyframeInterval
+    // frames one is stored whole
+    public BinaryFrameEncoder(
+            Path file,
+            int particleCount,
+            double snapshotStep,
+            double tolerance,
+            int keyframeInterval)
+            throws IOException {
+        this(file, particleCount, snapshotStep, Double.BYTES, DELTA, tolerance, keyframeInterval);
+    }
+
+    private BinaryFrameEncoder(
+            Path file,
+            int particleCount,
+            double snapshotStep,
+            int precision,
+            int encoding,
+            double tolerance,
+            int keyframeInterval)
+            throws IOException {
+        this(
+                FileChannel.open(
+                        file,
+                        StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING),
+                particleCount,
+                precision,
+                encoding,
+                tolerance,
+                keyframeInterval);
+
+        ByteBuffer header =
+                ByteBuffer.allocate(encoding == DELTA ? DELTA_HEADER_SIZE : HEADER_SIZE)
+                        .order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.putInt(particleCount);
+        header.putInt(0);
+        header.putDouble(snapshotStep);
+        header.putInt(precision);
+        header.putInt(encoding);
+        header.putLong(0);
+        if (encoding == DELTA) {
+            header.putDouble(tolerance);
+            header.putInt(keyframeInterval);
+            header.putInt(0);
+        }
+        header.flip();
+        position = write(header, 0);
+    }
+
+    private BinaryFrameEncoder(
+            FileChannel channel,
+            int particleCount,
+            int precision,
+            int encoding,
+            double tolerance,
+            int keyframeInterval) {
+        this.channel = channel;
+        this.particleCount = particleCount;
+        this.precision = precision;
+        this.encoding = encoding;
+        this.tolerance = tolerance;
+        this.keyframeInterval = keyframeInterval;
+        this.previousX = encoding == DELTA ? new long[particleCount] : null;
+        this.previousY = encoding == DELTA ? new long[particleCount] : null;
+
+        // A varint takes up to 10 bytes
+        int coordinateSize = encoding == DELTA ? 10 : precision;
+        this.frame =
+                ByteBuffer.allocateDirect(Double.BYTES + 2 * particleCount * coordinateSize)
+                        .order(ByteOrder.LITTLE_ENDIAN);
+        this.field = ByteBuffer.allocate(Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        this.offsets = new long[64];
+    }
+
+    // Continues the file of an interrupted run after its first `frames`
+    // frames. The format is the one in its header, the index is dropped and
+    // written again on close.
+    public static BinaryFrameEncoder resume(Path file, int frames) throws IOException {
+        BinaryFrameEncoder encoder;
+
+        try (TrajectoryReader reader = new TrajectoryReader(file)) {
+            if (frames > reader.getFrameCount()) {
+                throw new IOException("Missing frames in snapshot file: " + file);
+            }
+
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE);
+            encoder =
+                    new BinaryFrameEncoder(
+                            channel,
+                            reader.getParticleCount(),
+                            reader.getPrecision() / 8,
+                            reader.getEncoding(),
+                            reader.getTolerance(),
+                            reader.getKeyframeInterval());
+
+            if (frames > encoder.offsets.length) {
+                encoder.offsets = new long[frames];
+            }
+            for (int f = 0; f < frames; f++) {
+                encoder.offsets[f] = reader.getOffset(f);
+            }
+            encoder.frameCount = frames;
+            encoder.position = reader.getOffset(frames);
+
+            // Deltas continue from the last frame kept
+            if (encoder.encoding == DELTA && frames > 0) {
+                double[] x = new double[encoder.particleCount];
+                double[] y = new double[encoder.particleCount];
+                reader.readFrame(frames - 1, x, y);
+                for (int i = 0; i < encoder.particleCount; i++) {
+                    encoder.previousX[i] = Math.round(x[i] / encoder.tolerance);
+                    encoder.previousY[i] = Math.round(y[i] / encoder.tolerance);
+                }
+            }
+        }
+
+        encoder.channel.truncate(encoder.position);
+        encoder.field.clear();
+        encoder.field.putLong(0).flip();
+        encoder.write(encoder.field, INDEX_OFFSET_OFFSET);
+        encoder.flush();
+        return encoder;
+    }
+
+    @Override
+    public void encode(double time, double[] x, double[] y) throws IOException {
+        frame.clear();
+        frame.putDouble(time);
+        if (encoding == DELTA) {
+            encodeDelta(x, y, frameCount % keyframeInterval == 0);
+        } else if (precision == Float.BYTES) {
+            for (int i = 0; i < particleCount; i++) {
+                frame.putFloat((float) x[i]);
+                frame.putFloat((float) y[i]);
+            }
+        } else {
+            for (int i = 0; i < particleCount; i++) {
+                frame.putDouble(x[i]);
+                frame.putDouble(y[i]);
+            }
+        }
+        frame.flip();
+
+        if (frameCount == offsets.length) {
+            offsets = Arrays.copyOf(offsets, 2 * frameCount);
+        }
+        offsets[frameCount++] = position;
+        position += write(frame, position);
+    }
+
+    private void encodeDelta(double[] x, double[] y, boolean keyframe) {
+        for (int i = 0; i < particleCount; i++) {
+            long qx = Math.round(x[i] / tolerance);
+            long qy = Math.round(y[i] / tolerance);
+
+            putVarLong(keyframe ? qx : qx - previousX[i]);
+            putVarLong(keyframe ? qy : qy - previousY[i]);
+
+            previousX[i] = qx;
+            previousY[i] = qy;
+        }
+    }
+
+    // Zigzag so small negative deltas also take few bytes
+    private void putVarLong(long value) {
+        long zigzag = (value << 1) ^ (value >> 63);
+        while ((zigzag & ~0x7FL) != 0) {
+            frame.put((byte) ((zigzag & 0x7F) | 0x80));
+            zigzag >>>= 7;
+        }
+        frame.put((byte) zigzag);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        field.clear();
+        field.putInt(frameCount).flip();
+        write(field, FRAME_COUNT_OFFSET);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            ByteBuffer index =
+                    ByteBuffer.allocate(frameCount * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            for (int k = 0; k < frameCount; k++) {
+                index.putLong(offsets[k]);
+            }
+            index.flip();
+            long indexOffset = position;
+            write(index, indexOffset);
+
+            flush();
+
+            field.clear();
+            field.putLong(indexOffset).flip();
+            write(field, INDEX_OFFSET_OFFSET);
+        } finally {
+            channel.close();
+        }
+    }
+
+    private long write(ByteBuffer buffer, long at) throws IOException {
+        long written = 0;
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer, at + written);
+        }
+        return written;
+    }
+}
@@ -1,16 +1,39 @@
 package ar.edu.itba.ss.g2.util;
 
+import ar.edu.itba.ss.g2.SweepRunner;
 import ar.edu.itba.ss.g2.config.Config;
 import ar.edu.itba.ss.g2.model.Particle;
+import ar.edu.itba.ss.g2.simulation.Checkpoint;
+import ar.edu.itba.ss.g2.simulation.ClogEvent;
+import ar.edu.itba.ss.g2.simulation.Continuation;
+import ar.edu.itba.ss.g2.simulation.FlowAnalytics;
+import ar.edu.itba.ss.g2.simulation.StopReason;
+import ar.edu.itba.ss.g2.simulation.StepProfiler;
+import ar.edu.itba.ss.g2.simulation.IntegratorComparison;
+import ar.edu.itba.ss.g2.simulation.PrecisionComparison;
 
-import java.io.BufferedWriter;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
 
 public class FileUtil {
 
+    private static final int CHECKPOINT_MAGIC = 0x4744434B; // "GDCK"
+    private static final int CHECKPOINT_VERSION = 1;
+
     private FileUtil() {
         throw new RuntimeException("Util class");
     }
@@ -74,33 +97,361 @@ public class FileUtil {
         }
     }
 
-    public static void serializeSnapshots(
-            List<List<Particle>> snapshots, Double dt, String directory) throws IOException {
+    public static void serializeIntegratorComparison(
+            List<IntegratorComparison.Result> results, String directory) throws IOException {
 
-        // Create directory if it doesn't exist
         File dir = new File(directory);
         if (!dir.exists()) {
             dir.mkdirs();
         }
 
+        try (FileWriter writer = new FileWriter(directory + "/integrators.txt")) {
+            writer.write(results.size() + "\n");
+
+            for (IntegratorComparison.Result result : results) {
+                writer.write(
+                        String.format(
+                                "%s %d %d %.5f %.5e %.5e\n",
+                                result.integrator().getName(),
+                                result.forceEvaluationsPerStep(),
+                                result.steps(),
+                                result.stepsPerSecond(),
+                                result.energyDrift(),
+                                result.maxEnergyError()));
+            }
+        }
+    }
+
+    public static void serializePrecisionComparison(
+            List<PrecisionComparison.Result> results, String directory) throws IOException {
+
+        File dir = new File(directory);
+        if (!dir.exists()) {
+            dir.mkdirs();
+        }
 
-        try (BufferedWriter writer =
-                new BufferedWriter(new FileWriter(directory + "/snapshots.txt"))) {
+        try (FileWriter writer = new FileWriter(directory + "/precision.txt")) {
+            writer.write(results.size() + "\n");
 
-            int particleCount = snapshots.get(0).size();
-            int totalSnapshots = snapshots.size();
+            for (PrecisionComparison.Result result : results) {
+                writer.write(
+                        String.format(
+                                "%s %d %.5f %.5f %.5f %d %.5f\n",
+                                result.precision().getName(),
+                                result.discharges(),
+                                result.flowRate(),
+                                result.standardError(),
+                                result.seconds(),
+                                result.maxCurveDifference(),
+                                result.flowRateDeviation()));
+            }
+        }
+    }
 
-            writer.write(particleCount + " " + totalSnapshots + "\n");
+    public static void serializeFlowSummary(
+            FlowAnalytics flowAnalytics,
+            double stopTime,
+            StopReason stopReason,
+            String directory)
+            throws IOException {
 
-            for (int i = 0; i < snapshots.size(); i++) {
-                double t = (i + 1) * dt;
-                writer.write(String.format("%.5f\n", t));
+        File dir = new File(directory);
+        if (!dir.exists()) {
+            dir.mkdirs();
+        }
+
+        try (FileWriter writer = new FileWriter(directory + "/summary.txt")) {
+            writer.write(flowAnalytics.getDischarges() + "\n");
+            writer.write(flowAnalytics.getWindow() + "\n");
+            writer.write(flowAnalytics.getSteadyStateTime() + "\n");
+            writer.write(flowAnalytics.getBatches() + "\n");
+            writer.write(flowAnalytics.getSteadyFlowRate() + "\n");
+            writer.write(flowAnalytics.getStandardError() + "\n");
+            writer.write(stopTime + "\n");
+            writer.write(stopReason.getName() + "\n");
+        }
+    }
+
+    // The flow curve is written while the simulation runs, see FlowAnalytics
+    // checkpoint: continues the flow.txt of the run it was taken from, null
+    // starts a new one
+    public static FlowCurveWriter createFlowCurveWriter(String directory, Checkpoint checkpoint)
+            throws IOException {
+
+        File dir = new File(directory);
+        if (!dir.exists()) {
+            dir.mkdirs();
+        }
+
+        if (checkpoint != null) {
+            return new FlowCurveWriter(directory + "/flow.txt", checkpoint.flowSamples());
+        }
+        return new FlowCurveWriter(directory + "/flow.txt");
+    }
+
+    public static void serializeClogs(List<ClogEvent> clogEvents, String directory)
+            throws IOException {
+
+        File dir = new File(directory);
+        if (!dir.exists()) {
+            dir.mkdirs();
+        }
+
+        try (FileWriter writer = new FileWriter(directory + "/clogs.txt")) {
+            writer.write(clogEvents.size() + "\n");
+
+            for (ClogEvent clogEvent : clogEvents) {
+                writer.write(
+                        String.format(
+                                "%.5f %.5e %s\n",
+                                clogEvent.time(),
+                                clogEvent.kineticEnergy(),
+                                clogEvent.action().getName()));
+            }
+        }
+    }
+
+    public static void serializeContinuation(List<Continuation.Step> steps, String directory)
+            throws IOException {
+
+        File dir = new File(directory);
+        if (!dir.exists()) {
+            dir.mkdirs();
+        }
+
+        try (FileWriter writer = new FileWriter(directory + "/continuation.txt")) {
+            writer.write(steps.size() + "\n");
+
+            for (Continuation.Step step : steps) {
+                writer.write(
+                        String.format(
+                                "%.5f %.5f %.5f %d %.5f %.5f %s\n",
+                                step.acceleration(),
+                                step.start(),
+                                step.end(),
+                                step.discharges(),
+                                step.flowRate(),
+                                step.standardError(),
+                                step.stopReason().getName()));
+            }
+        }
+    }
+
+    // Times in seconds, except the mean and max of each phase in microseconds.
+    // Histograms list bucket 0 (zeros) and then [2^(b-1), 2^b) for b = 1, 2, ...
+    // in nanoseconds, contacts or tries
+    public static void serializeMetrics(StepProfiler profiler, String directory)
+            throws IOException {
+
+        File dir = new File(directory);
+        if (!dir.exists()) {
+            dir.mkdirs();
+        }
+
+        try (FileWriter writer = new FileWriter(directory + "/metrics.txt")) {
+            writer.write(String.format("%.5f\n", profiler.getRunNanos() * 1e-9));
+            writer.write(profiler.getSteps() + "\n");
+
+            for (StepProfiler.Phase phase : StepProfiler.Phase.values()) {
+                StepProfiler.Histogram histogram = profiler.getPhase(phase);
+                writer.write(
+                        String.format(
+                                "%s %d %.5f %.3f %.3f%s\n",
+                                phase.getName(),
+                                histogram.getCount(),
+                                histogram.getTotal() * 1e-9,
+                                histogram.getMean() * 1e-3,
+                                histogram.getMax() * 1e-3,
+                                formatBuckets(histogram)));
+            }
+
+            StepProfiler.Histogram contacts = profiler.getContacts();
+            writer.write(
+                    String.format(
+                            "contacts %.3f %d%s\n",
+                            contacts.getMean(), contacts.getMax(), formatBuckets(contacts)));
+
+            writer.write(
+                    String.format(
+                            "overlap %.8f %.8f\n",
+                            profiler.getMaxOverlap(), profiler.getMeanMaxOverlap()));
+
+            StepProfiler.Histogram tries = profiler.getReinsertionTries();
+            writer.write(
+                    String.format(
+                            "reinsertions %d %.3f %d%s\n",
+                            profiler.getReinsertions(),
+                            tries.getMean(),
+                            tries.getMax(),
+                            formatBuckets(tries)));
+        }
+    }
+
+    private static String formatBuckets(StepProfiler.Histogram histogram) {
+        StringBuilder line = new StringBuilder();
+        for (long count : histogram.getBuckets()) {
+            line.append(' ').append(count);
+        }
+        return line.toString();
+    }
+
+    public static void serializeSweep(List<SweepRunner.Result> results, String directory)
+            throws IOException {
 
-                List<Particle> particles = snapshots.get(i);
-                for (Particle particle : particles) {
-                    writer.write(String.format("%.5f %.5f\n", particle.getX(), particle.getY()));
+        File dir = new File(directory);
+        if (!dir.exists()) {
+            dir.mkdirs();
+        }
+
+        try (FileWriter writer = new FileWriter(directory + "/sweep.txt")) {
+            writer.write(results.size() + "\n");
+
+            for (SweepRunner.Result result : results) {
+                StringBuilder line =
+                        new StringBuilder(
+                                String.format(
+                                        "%s %s %d %.3f",
+                                        result.name(),
+                                        result.completed() ? "completed" : "failed",
+                                        result.discharges(),
+                                        result.seconds()));
+                for (Map.Entry<String, String> parameter : result.parameters().entrySet()) {
+                    line.append(' ')
+                            .append(parameter.getKey())
+                            .append('=')
+                            .append(parameter.getValue());
                 }
+                writer.write(line.append('\n').toString());
             }
         }
     }
+
+    // Snapshots are written while the simulation runs, see AsyncSnapshotWriter
+    // checkpoint: continues the snapshots of the run it was taken from, null
+    // starts a new file
+    public static AsyncSnapshotWriter createSnapshotWriter(
+            Config config, int particleCount, String directory, Checkpoint checkpoint)
+            throws IOException {
+
+        File dir = new File(directory);
+        if (!dir.exists()) {
+            dir.mkdirs();
+        }
+
+        int frames = checkpoint != null ? checkpoint.snapshotFrames() : 0;
+        Path text = Path.of(directory, "snapshots.txt");
+        Path binary = Path.of(directory, "snapshots.bin");
+
+        FrameEncoder encoder =
+                switch (config.getSnapshotFormat()) {
+                    case TEXT -> frames > 0
+                            ? TextFrameEncoder.resume(text, particleCount, frames)
+                            : new TextFrameEncoder(text, particleCount);
+                    case BINARY -> frames > 0
+                            ? BinaryFrameEncoder.resume(binary, frames)
+                            : new BinaryFrameEncoder(
+                                    binary,
+                                    particleCount,
+                                    config.getSnapshotStep(),
+                                    config.getSnapshotPrecision());
+                    case COMPRESSED -> frames > 0
+                            ? BinaryFrameEncoder.resume(binary, frames)
+                            : new BinaryFrameEncoder(
+                                    binary,
+                                    particleCount,
+                                    config.getSnapshotStep(),
+                                    config.getSnapshotTolerance(),
+                                    config.getKeyframeInterval());
+                };
+
+        return new AsyncSnapshotWriter(encoder, particleCount);
+    }
+
+    // checkpoint.bin: "GDCK", version, snapshot frames, flow samples, length
+    // and state. Written to a temporary file and moved over the previous one,
+    // so a run killed while writing it keeps the last complete checkpoint.
+    public static void serializeCheckpoint(Checkpoint checkpoint, String directory)
+            throws IOException {
+
+        File dir = new File(directory);
+        if (!dir.exists()) {
+            dir.mkdirs();
+        }
+
+        Path file = Path.of(directory, "checkpoint.bin");
+        Path temporary = Path.of(directory, "checkpoint.bin.tmp");
+
+        try (FileChannel channel =
+                        FileChannel.open(
+                                temporary,
+                                StandardOpenOption.CREATE,
+                                StandardOpenOption.WRITE,
+                                StandardOpenOption.TRUNCATE_EXISTING);
+                DataOutputStream out =
+                        new DataOutputStream(
+                                new BufferedOutputStream(
+                                        Channels.newOutputStream(channel)))) {
+            out.writeInt(CHECKPOINT_MAGIC);
+            out.writeInt(CHECKPOINT_VERSION);
+            out.writeInt(checkpoint.snapshotFrames());
+            out.writeLong(checkpoint.flowSamples());
+            out.writeInt(checkpoint.state().length);
+            out.write(checkpoint.state());
+            out.flush();
+            channel.force(true);
+        }
+
+        Files.move(
+                temporary,
+                file,
+                StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // null if the directory has no checkpoint
+    public static Checkpoint deserializeCheckpoint(String directory) throws IOException {
+        Path file = Path.of(directory, "checkpoint.bin");
+        if (!Files.exists(file)) {
+            return null;
+        }
+
+        try (DataInputStream in =
+                new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != CHECKPOINT_MAGIC) {
+                throw new IOException("Not a checkpoint file: " + file);
+            }
+            if (in.readInt() != CHECKPOINT_VERSION) {
+                throw new IOException("Unsupported checkpoint file version: " + file);
+            }
+
+            int snapshotFrames = in.readInt();
+            long flowSamples = in.readLong();
+            byte[] state = new byte[in.readInt()];
+            in.readFully(state);
+
+            return new Checkpoint(snapshotFrames, flowSamples, state);
+        }
+    }
+
+    // Drops everything after the first `lines` lines of a text file
+    static void truncateLines(Path file, long lines) throws IOException {
+        long offset = 0;
+
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+            for (long line = 0; line < lines; line++) {
+                int b;
+                do {
+                    b = in.read();
+                    if (b < 0) {
+                        throw new EOFException("Missing lines in " + file);
+                    }
+                    offset++;
+                } while (b != '\n');
+            }
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(offset);
+        }
+    }
 }
@@ -0,0 +1,45 @@
+package ar.edu.itba.ss.g2.util;
+
+import ar.edu.itba.ss.g2.simulation.FlowAnalytics;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+
+// flow.txt: one "time discharges flowRate" line per bin of FlowAnalytics,
+// written as the simulation runs
+public class FlowCurveWriter implements FlowAnalytics.Listener, Closeable {
+
+    private final BufferedWriter writer;
+
+    public FlowCurveWriter(String file) throws IOException {
+        this.writer = new BufferedWriter(new FileWriter(file));
+    }
+
+    // Continues the file of an interrupted run after its first `samples` lines
+    public FlowCurveWriter(String file, long samples) throws IOException {
+        FileUtil.truncateLines(Path.of(file), samples);
+        this.writer = new BufferedWriter(new FileWriter(file, true));
+    }
+
+    @Override
+    public void onSample(double time, long discharges, double flowRate) {
+        try {
+            writer.write(String.format("%.5f %d %.5f\n", time, discharges, flowRate));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error while writing the flow curve", e);
+        }
+    }
+
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
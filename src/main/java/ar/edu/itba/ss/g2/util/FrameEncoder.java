@@ -0,0 +1,15 @@
+package ar.edu.itba.ss.g2.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+// Format of a snapshot file. Encoders are only called from the writer thread
+// of AsyncSnapshotWriter.
+public interface FrameEncoder extends Closeable {
+
+    // x and y hold the positions of the mobile particles
+    void encode(double time, double[] x, double[] y) throws IOException;
+
+    // Leaves the file readable with every frame encoded so far
+    void flush() throws IOException;
+}
@@ -0,0 +1,92 @@
+package ar.edu.itba.ss.g2.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// snapshots.txt: a "N frames" header followed by, for every frame, its time
+// and one "x y" line per particle. The frame count is padded to a fixed width
+// so it can be rewritten in place after every flush.
+public class TextFrameEncoder implements FrameEncoder {
+
+    private final FileChannel channel;
+    private final int particleCount;
+    private final StringBuilder buffer;
+
+    private int frameCount;
+
+    public TextFrameEncoder(Path file, int particleCount) throws IOException {
+        this(
+                FileChannel.open(
+                        file,
+                        StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING),
+                particleCount);
+
+        write(header());
+    }
+
+    private TextFrameEncoder(FileChannel channel, int particleCount) {
+        this.channel = channel;
+        this.particleCount = particleCount;
+        this.buffer = new StringBuilder();
+    }
+
+    // Continues the file of an interrupted run after its first `frames` frames
+    public static TextFrameEncoder resume(Path file, int particleCount, int frames)
+            throws IOException {
+        FileUtil.truncateLines(file, 1 + (long) frames * (particleCount + 1));
+
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+
+        TextFrameEncoder encoder = new TextFrameEncoder(channel, particleCount);
+        encoder.frameCount = frames;
+        encoder.flush();
+        return encoder;
+    }
+
+    @Override
+    public void encode(double time, double[] x, double[] y) throws IOException {
+        buffer.setLength(0);
+        buffer.append(String.format("%.5f\n", time));
+        for (int i = 0; i < particleCount; i++) {
+            buffer.append(String.format("%.5f %.5f\n", x[i], y[i]));
+        }
+
+        write(buffer.toString());
+        frameCount++;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        ByteBuffer header = ByteBuffer.wrap(header().getBytes(StandardCharsets.US_ASCII));
+        while (header.hasRemaining()) {
+            channel.write(header, header.position());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private String header() {
+        return String.format("%d %10d\n", particleCount, frameCount);
+    }
+
+    private void write(String text) throws IOException {
+        ByteBuffer bytes = ByteBuffer.wrap(text.getBytes(StandardCharsets.US_ASCII));
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package ar.edu.itba.ss.g2.util;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Random access to the frames of a snapshots.bin written by
+// BinaryFrameEncoder. Only the requested frames are mapped, so reading frame k
+// costs the same for any k regardless of the size of the file. DELTA frames
+// are decoded from the previous keyframe, or from the last frame read when
+// reading forward.
+public class TrajectoryReader implements Closeable {
+
+    private final FileChannel channel;
+
+    private final int particleCount;
+    private final int frameCount;
+    private final double snapshotStep;
+    private final int precision;
+    private final int encoding;
+    private final int headerSize;
+    private final long frameSize;
+
+    private final double tolerance;
+    private final int keyframeInterval;
+
+    // Offset of every frame and of the end of the last one. null for RAW
+    // frames of an interrupted run, which are found by size
+    private final long[] offsets;
+
+    // DELTA: rounded coordinates of the last frame decoded
+    private final long[] currentX;
+    private final long[] currentY;
+    private int currentFrame = -1;
+
+    public TrajectoryReader(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+
+        MappedByteBuffer header = map(0, BinaryFrameEncoder.HEADER_SIZE);
+        if (header.getInt() != BinaryFrameEncoder.MAGIC) {
+            channel.close();
+            throw new IOException("Not a snapshot file: " + file);
+        }
+        if (header.getInt() != BinaryFrameEncoder.VERSION) {
+            channel.close();
+            throw new IOException("Unsupported snapshot file version: " + file);
+        }
+        this.particleCount = header.getInt();
+        this.frameCount = header.getInt();
+        this.snapshotStep = header.getDouble();
+        this.precision = header.getInt();
+        this.encoding = header.getInt();
+        long indexOffset = header.getLong();
+
+        if (encoding == BinaryFrameEncoder.DELTA) {
+            MappedByteBuffer extension =
+                    map(
+                            BinaryFrameEncoder.HEADER_SIZE,
+                            BinaryFrameEncoder.DELTA_HEADER_SIZE - BinaryFrameEncoder.HEADER_SIZE);
+            this.tolerance = extension.getDouble();
+            this.keyframeInterval = extension.getInt();
+            this.headerSize = BinaryFrameEncoder.DELTA_HEADER_SIZE;
+            this.currentX = new long[particleCount];
+            this.currentY = new long[particleCount];
+        } else if (encoding == BinaryFrameEncoder.RAW) {
+            this.tolerance = 0;
+            this.keyframeInterval = 1;
+            this.headerSize = BinaryFrameEncoder.HEADER_SIZE;
+            this.currentX = null;
+            this.currentY = null;
+        } else {
+            channel.close();
+            throw new IOException("Unsupported snapshot encoding: " + file);
+        }
+
+        this.frameSize = Double.BYTES + 2L * particleCount * precision;
+
+        if (indexOffset != 0) {
+            this.offsets = readIndex(indexOffset);
+        } else if (encoding == BinaryFrameEncoder.DELTA) {
+            this.offsets = scanFrames();
+        } else {
+            this.offsets = null;
+        }
+    }
+
+    public int getParticleCount() {
+        return particleCount;
+    }
+
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    public double getSnapshotStep() {
+        return snapshotStep;
+    }
+
+    // Bits per coordinate
+    public int getPrecision() {
+        return precision * 8;
+    }
+
+    int getEncoding() {
+        return encoding;
+    }
+
+    double getTolerance() {
+        return tolerance;
+    }
+
+    int getKeyframeInterval() {
+        return keyframeInterval;
+    }
+
+    // Where the given frame starts, getFrameCount() gives the end of the last
+    long getOffset(int frame) {
+        return offsets != null ? offsets[frame] : headerSize + frame * frameSize;
+    }
+
+    // Fills the positions of the given frame and returns its time
+    public double readFrame(int frame, double[] x, double[] y) throws IOException {
+        if (frame < 0 || frame >= frameCount) {
+            throw new IndexOutOfBoundsException("Frame " + frame + " of " + frameCount);
+        }
+
+        if (encoding == BinaryFrameEncoder.DELTA) {
+            return readDeltaFrame(frame, x, y);
+        }
+
+        MappedByteBuffer buffer = map(getOffset(frame), frameSize);
+
+        double time = buffer.getDouble();
+        if (precision == Float.BYTES) {
+            for (int i = 0; i < particleCount; i++) {
+                x[i] = buffer.getFloat();
+                y[i] = buffer.getFloat();
+            }
+        } else {
+            for (int i = 0; i < particleCount; i++) {
+                x[i] = buffer.getDouble();
+                y[i] = buffer.getDouble();
+            }
+        }
+        return time;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private double readDeltaFrame(int frame, double[] x, double[] y) throws IOException {
+        int keyframe = frame - frame % keyframeInterval;
+        int first = currentFrame >= keyframe && currentFrame <= frame ? currentFrame + 1 : keyframe;
+
+        double time = 0;
+        if (first <= frame) {
+            MappedByteBuffer buffer = map(offsets[first], offsets[frame + 1] - offsets[first]);
+            for (int f = first; f <= frame; f++) {
+                time = buffer.getDouble();
+                boolean isKeyframe = f % keyframeInterval == 0;
+                for (int i = 0; i < particleCount; i++) {
+                    long dx = getVarLong(buffer);
+                    long dy = getVarLong(buffer);
+                    currentX[i] = isKeyframe ? dx : currentX[i] + dx;
+                    currentY[i] = isKeyframe ? dy : currentY[i] + dy;
+                }
+            }
+            currentFrame = frame;
+        } else {
+            // Same frame as the last read
+            time = map(offsets[frame], Double.BYTES).getDouble();
+        }
+
+        for (int i = 0; i < particleCount; i++) {
+            x[i] = currentX[i] * tolerance;
+            y[i] = currentY[i] * tolerance;
+        }
+        return time;
+    }
+
+    private long[] readIndex(long indexOffset) throws IOException {
+        LongBuffer index = map(indexOffset, (long) frameCount * Long.BYTES).asLongBuffer();
+
+        long[] offsets = new long[frameCount + 1];
+        index.get(offsets, 0, frameCount);
+        offsets[frameCount] = indexOffset;
+        return offsets;
+    }
+
+    // Interrupted DELTA run: frames have different sizes, so they are found
+    // by skipping the varints of each one
+    private long[] scanFrames() throws IOException {
+        long[] offsets = new long[frameCount + 1];
+
+        channel.position(headerSize);
+        InputStream in = new BufferedInputStream(Channels.newInputStream(channel));
+
+        long offset = headerSize;
+        for (int f = 0; f < frameCount; f++) {
+            offsets[f] = offset;
+            in.skipNBytes(Double.BYTES);
+            offset += Double.BYTES;
+            for (int v = 0; v < 2 * particleCount; v++) {
+                int b;
+                do {
+                    b = in.read();
+                    if (b < 0) {
+                        throw new EOFException("Truncated snapshot file");
+                    }
+                    offset++;
+                } while ((b & 0x80) != 0);
+            }
+        }
+        offsets[frameCount] = offset;
+
+        return offsets;
+    }
+
+    private static long getVarLong(MappedByteBuffer buffer) {
+        long zigzag = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            zigzag |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+
+    private MappedByteBuffer map(long offset, long size) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset, size);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+}
@@ -0,0 +1,76 @@
+package ar.edu.itba.ss.g2;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+public class SweepRunnerTest {
+
+    @TempDir Path directory;
+
+    private String[] args(Path output) {
+        return new String[] {
+            "-W", "10", "-L", "20", "-M", "1", "-N", "5", "-R", "1", "-r", "0.5", "-m", "1",
+            "-A", "1", "-k_n", "250", "-g", "2.5", "-k_t", "500", "-dt", "0.001", "-dt2", "0.1",
+            "-tf", "0.2", "--sweep-workers", "2", "-out", output.toString()
+        };
+    }
+
+    private String manifest(String... lines) throws IOException {
+        Path file = directory.resolve("manifest.txt");
+        Files.write(file, List.of(lines));
+        return file.toString();
+    }
+
+    @Test
+    public void completesEveryRun() throws IOException {
+        Path output = directory.resolve("out");
+
+        assertTrue(SweepRunner.run(manifest("seed = 1, 2"), args(output)));
+
+        List<String> lines = Files.readAllLines(output.resolve("sweep.txt"));
+        assertEquals("2", lines.get(0));
+        assertTrue(lines.get(1).startsWith("run_0 completed "));
+        assertTrue(lines.get(1).endsWith(" seed=1"));
+        assertTrue(lines.get(2).startsWith("run_1 completed "));
+        assertTrue(Files.exists(output.resolve("run_1").resolve("summary.txt")));
+    }
+
+    @Test
+    public void reportsFailedRunsAndKeepsGoing() throws IOException {
+        // The runs under a regular file can't create their directory
+        Path output = directory.resolve("out");
+        Path blocker = Files.createFile(directory.resolve("blocker"));
+
+        boolean completed =
+                SweepRunner.run(
+                        manifest("output-directory = " + output + ", " + blocker, "seed = 1, 2"),
+                        args(output));
+
+        assertFalse(completed);
+
+        List<String> lines = Files.readAllLines(output.resolve("sweep.txt"));
+        assertEquals("4", lines.get(0));
+        assertTrue(lines.get(1).startsWith("run_0 completed "));
+        assertTrue(lines.get(2).startsWith("run_1 completed "));
+        assertTrue(lines.get(3).startsWith("run_2 failed 0 "));
+        assertTrue(lines.get(4).startsWith("run_3 failed 0 "));
+    }
+
+    @Test
+    public void invalidManifestRunsNothing() throws IOException {
+        Path output = directory.resolve("out");
+
+        assertFalse(SweepRunner.run(manifest("seed = 1, x"), args(output)));
+        assertFalse(SweepRunner.run(manifest("seed"), args(output)));
+        assertFalse(Files.exists(output));
+    }
+}
@@ -0,0 +1,97 @@
+package ar.edu.itba.ss.g2.config;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class SweepManifestTest {
+
+    private static final String[] BASE_ARGS = {
+        "-W", "10", "-L", "20", "-M", "1", "-N", "5", "-R", "1", "-r", "0.5", "-m", "1",
+        "-A", "1", "-k_n", "250", "-g", "2.5", "-k_t", "500", "-dt", "0.001", "-dt2", "0.1",
+        "-tf", "1", "-out", "out"
+    };
+
+    @TempDir Path directory;
+
+    private SweepManifest read(String... lines) throws IOException {
+        Path file = directory.resolve("sweep.txt");
+        Files.write(file, List.of(lines));
+        return SweepManifest.read(file);
+    }
+
+    @Test
+    public void expandsEveryCombination() throws IOException {
+        SweepManifest manifest =
+                read(
+                        "# 3 x 2 runs",
+                        "",
+                        "acceleration = 0.5, 1,1.5",
+                        "  seed=1, 2  ");
+
+        List<Map<String, String>> runs = manifest.getRuns();
+
+        // The last key varies fastest
+        assertEquals(6, runs.size());
+        String[][] expected = {
+            {"0.5", "1"}, {"0.5", "2"}, {"1", "1"}, {"1", "2"}, {"1.5", "1"}, {"1.5", "2"}
+        };
+        for (int i = 0; i < runs.size(); i++) {
+            assertEquals(List.of("acceleration", "seed"), List.copyOf(runs.get(i).keySet()));
+            assertEquals(expected[i][0], runs.get(i).get("acceleration"));
+            assertEquals(expected[i][1], runs.get(i).get("seed"));
+        }
+    }
+
+    @Test
+    public void emptyManifestHasOneRunWithoutParameters() throws IOException {
+        List<Map<String, String>> runs = read("# nothing").getRuns();
+
+        assertEquals(1, runs.size());
+        assertTrue(runs.get(0).isEmpty());
+    }
+
+    @Test
+    public void rejectsInvalidLines() {
+        assertThrows(IOException.class, () -> read("acceleration 0.5, 1"));
+        assertThrows(IOException.class, () -> read("= 0.5"));
+        assertThrows(IOException.class, () -> read("acceleration = , "));
+        assertThrows(IOException.class, () -> read("seed = 1", "seed = 2"));
+    }
+
+    @Test
+    public void flagsAreAddedOnlyWhenTrue() {
+        Map<String, String> run = new LinkedHashMap<>();
+        run.put("adaptive-step", "true");
+        run.put("profile", "false");
+        run.put("seed", "7");
+
+        assertArrayEquals(
+                new String[] {"--adaptive-step", "--seed", "7", "-tf", "1"},
+                SweepManifest.toArgs(run, new String[] {"-tf", "1"}));
+    }
+
+    @Test
+    public void runValuesTakePrecedenceOverArgs() {
+        Map<String, String> run = new LinkedHashMap<>();
+        run.put("acceleration", "2");
+        run.put("adaptive-step", "true");
+
+        Config config = new ArgParser(SweepManifest.toArgs(run, BASE_ARGS)).parse();
+
+        assertEquals(2, config.getAcceleration());
+        assertTrue(config.isAdaptiveStep());
+        assertEquals(250, config.getNormalK());
+    }
+}
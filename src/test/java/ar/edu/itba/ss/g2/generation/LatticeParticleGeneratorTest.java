@@ -0,0 +1,39 @@
+package ar.edu.itba.ss.g2.generation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import ar.edu.itba.ss.g2.model.Particle;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+public class LatticeParticleGeneratorTest {
+
+    @Test
+    public void generatesDensePackingWithoutOverlaps() {
+        Random random = new Random(3);
+        List<Particle> obstacles = new ObstacleGenerator(40, 140, 80, 1, random).generate();
+
+        // Packing fraction ~0.6, past where rejection sampling gets stuck
+        List<Particle> particles =
+                new LatticeParticleGenerator(40, 140, 1100, 1, 1, 1, obstacles, random).generate();
+
+        assertEquals(1100, particles.size());
+        for (int i = 0; i < particles.size(); i++) {
+            Particle particle = particles.get(i);
+
+            assertTrue(particle.getY() >= 1 && particle.getY() <= 39);
+            assertTrue(particle.getX() >= 1 && particle.getX() <= 139);
+            for (Particle obstacle : obstacles) {
+                assertFalse(obstacle.overlaps(particle));
+            }
+            for (int j = i + 1; j < particles.size(); j++) {
+                assertFalse(particles.get(j).overlaps(particle));
+            }
+        }
+    }
+}
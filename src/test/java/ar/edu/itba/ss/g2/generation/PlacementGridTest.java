@@ -0,0 +1,38 @@
+package ar.edu.itba.ss.g2.generation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import ar.edu.itba.ss.g2.model.Particle;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class PlacementGridTest {
+
+    @Test
+    public void overlapsMatchesTestingEveryBody() {
+        Random random = new Random(7);
+        PlacementGrid grid = new PlacementGrid(50, 20, 2.0);
+        List<Particle> placed = new ArrayList<>();
+
+        // Mixed radii and some bodies outside the channel, like the obstacles
+        // and particles of the generators
+        for (int i = 0; i < 5_000; i++) {
+            double radius = random.nextBoolean() ? 0.5 : 2.0;
+            double x = random.nextDouble() * 54 - 2;
+            double y = random.nextDouble() * 24 - 2;
+            Particle candidate = new Particle(i, x, 0.0, 0.0, y, 0.0, 0.0, 1.0, radius);
+
+            boolean expected = placed.stream().anyMatch(p -> p.overlaps(candidate));
+            assertEquals(expected, grid.overlaps(x, y, radius), "Candidate " + i);
+
+            if (!expected) {
+                placed.add(candidate);
+                grid.add(candidate);
+            }
+        }
+    }
+}
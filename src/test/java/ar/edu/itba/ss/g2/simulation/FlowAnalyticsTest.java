@@ -0,0 +1,55 @@
+package ar.edu.itba.ss.g2.simulation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class FlowAnalyticsTest {
+
+    @Test
+    public void detectsTheSteadyStateAfterTheTransient() {
+        FlowAnalytics flowAnalytics = new FlowAnalytics(10.0);
+
+        // Nothing leaves during the first window, then 2 per unit time
+        for (double t = 10.25; t < 60; t += 0.5) {
+            flowAnalytics.record(t);
+        }
+        flowAnalytics.advance(60);
+
+        assertEquals(100, flowAnalytics.getDischarges());
+        assertEquals(2.0, flowAnalytics.getFlowRate(), 1e-12);
+
+        // The first full window is compared against the empty one
+        assertTrue(flowAnalytics.isSteady());
+        assertEquals(20.0, flowAnalytics.getSteadyStateTime(), 1e-12);
+        assertEquals(4, flowAnalytics.getBatches());
+        assertEquals(2.0, flowAnalytics.getSteadyFlowRate(), 1e-12);
+        assertEquals(0.0, flowAnalytics.getStandardError(), 1e-12);
+    }
+
+    @Test
+    public void noFlowRateBeforeTheFirstBin() {
+        FlowAnalytics flowAnalytics = new FlowAnalytics(10.0);
+        flowAnalytics.record(0.5);
+        flowAnalytics.advance(0.5);
+
+        assertEquals(1, flowAnalytics.getDischarges());
+        assertTrue(Double.isNaN(flowAnalytics.getFlowRate()));
+
+        // The first bin is one tenth of the window
+        flowAnalytics.advance(1);
+        assertEquals(1.0, flowAnalytics.getFlowRate(), 1e-12);
+    }
+
+    @Test
+    public void noSteadyStateWithoutDischarges() {
+        FlowAnalytics flowAnalytics = new FlowAnalytics(10.0);
+        flowAnalytics.advance(100);
+
+        assertFalse(flowAnalytics.isSteady());
+        assertEquals(0.0, flowAnalytics.getFlowRate());
+        assertTrue(Double.isNaN(flowAnalytics.getSteadyFlowRate()));
+    }
+}
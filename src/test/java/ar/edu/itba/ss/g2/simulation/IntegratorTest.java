@@ -0,0 +1,129 @@
+package ar.edu.itba.ss.g2.simulation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import ar.edu.itba.ss.g2.config.ForceKernel;
+import ar.edu.itba.ss.g2.model.Particle;
+import ar.edu.itba.ss.g2.model.ParticleStore;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+public class IntegratorTest {
+
+    private static final double NORMAL_K = 250;
+
+    // Particle of unit mass and radius pushed by a unit acceleration against an
+    // obstacle at x = 10. Without damping it oscillates around the overlap
+    // 1 / k_n, starting from half of it, and never leaves the obstacle:
+    // x(t) = 8 + 1 / k_n - cos(sqrt(k_n) t) / (2 k_n)
+    private static ParticleStore createPressedParticle() {
+        return new ParticleStore(
+                List.of(new Particle(0, 10.0, 0.0, 0.0, 5.0, 0.0, 0.0, 0.0, 1.0)),
+                List.of(
+                        new Particle(
+                                1, 8.0 + 0.5 / NORMAL_K, 0.0, 0.0, 5.0, 0.0, 0.0, 1.0, 1.0)));
+    }
+
+    private static ForceEngine createForceEngine(ParticleStore store) {
+        return createForceEngine(store, 1);
+    }
+
+    private static ForceEngine createForceEngine(ParticleStore store, double acceleration) {
+        return new ForceEngine(
+                store,
+                new VerletList(store, 20, 10, 0),
+                10,
+                acceleration,
+                NORMAL_K,
+                0,
+                0,
+                1,
+                ForceKernel.SCALAR);
+    }
+
+    private static double pressedParticleX(double time) {
+        return 8.0 + 1 / NORMAL_K - Math.cos(Math.sqrt(NORMAL_K) * time) / (2 * NORMAL_K);
+    }
+
+    // Error of Beeman at t = 1 taking the steps in turn
+    private static double beemanError(double... steps) {
+        ParticleStore store = createPressedParticle();
+        BeemanIntegrator integrator = new BeemanIntegrator(store, createForceEngine(store));
+        integrator.initialize();
+
+        double time = 0;
+        for (int k = 0; time < 1 - 1e-12; k++) {
+            double dt = steps[k % steps.length];
+            integrator.step(dt);
+            time += dt;
+        }
+
+        return Math.abs(store.getX()[1] - pressedParticleX(time));
+    }
+
+    @Test
+    public void beemanStaysAccurateWhenTheStepChanges() {
+        double fixed = beemanError(1e-3);
+
+        // Changing the step every step, with F(t-dt) moved to the new step,
+        // is as accurate as the largest of the steps. Without rescaling the
+        // history the error is about 300 times larger
+        double changing = beemanError(1e-3, 2.5e-4, 5e-4);
+
+        assertTrue(fixed < 1e-7, "Error with a fixed step: " + fixed);
+        assertTrue(changing <= fixed, "Error changing the step: " + changing);
+    }
+
+    @Test
+    public void velocityVerletFollowsThePressedParticle() {
+        ParticleStore store = createPressedParticle();
+        VelocityVerletIntegrator integrator =
+                new VelocityVerletIntegrator(store, createForceEngine(store));
+        integrator.initialize();
+
+        double dt = 1e-3;
+        for (int k = 1; k <= 1000; k++) {
+            integrator.step(dt);
+
+            double error = Math.abs(store.getX()[1] - pressedParticleX(k * dt));
+            assertTrue(error < 1e-6, "Error at step " + k + ": " + error);
+        }
+    }
+
+    @Test
+    public void velocityVerletConservesEnergyInAHeadOnContact() {
+        // Two particles of unit mass and radius moving towards each other
+        // without acceleration, damping nor tangential force
+        ParticleStore store =
+                new ParticleStore(
+                        List.of(),
+                        List.of(
+                                new Particle(0, 7.0, 1.0, 0.0, 5.0, 0.0, 0.0, 1.0, 1.0),
+                                new Particle(1, 13.0, -1.0, 0.0, 5.0, 0.0, 0.0, 1.0, 1.0)));
+        ForceEngine forceEngine = createForceEngine(store, 0);
+        VelocityVerletIntegrator integrator = new VelocityVerletIntegrator(store, forceEngine);
+        integrator.initialize();
+
+        double maxError = 0;
+        for (int k = 0; k < 4000; k++) {
+            integrator.step(1e-3);
+
+            double kinetic = 0;
+            for (int i = 0; i < store.size(); i++) {
+                double vx = store.getVx()[i];
+                double vy = store.getVy()[i];
+                kinetic += 0.5 * store.getMass()[i] * (vx * vx + vy * vy);
+            }
+            double energy = kinetic + forceEngine.getElasticEnergy();
+            maxError = Math.max(maxError, Math.abs(energy - 1));
+        }
+
+        // They touched and bounced back with the same speed
+        assertEquals(-1, store.getVx()[0], 1e-3);
+        assertEquals(1, store.getVx()[1], 1e-3);
+        assertTrue(maxError < 1e-3, "Largest energy error: " + maxError);
+    }
+}
@@ -0,0 +1,94 @@
+package ar.edu.itba.ss.g2.simulation;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import ar.edu.itba.ss.g2.config.Config;
+import ar.edu.itba.ss.g2.config.StatePrecision;
+import ar.edu.itba.ss.g2.model.Particle;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class PrecisionComparisonTest {
+
+    private static final List<Particle> OBSTACLES = new ArrayList<>();
+    private static final List<Particle> PARTICLES = new ArrayList<>();
+
+    // Overlapping block of particles without acceleration, as in
+    // SimulationTest: it expands against the walls and obstacles and no
+    // particle leaves
+    static {
+        for (int i = 0; i < 4; i++) {
+            OBSTACLES.add(new Particle(i, 90.0 + 6 * i, 0.0, 0.0, 3.0, 0.0, 0.0, 0.0, 1.0));
+        }
+
+        for (int i = 0; i < 10; i++) {
+            for (int j = 0; j < 8; j++) {
+                double x = 90.0 + 1.9 * i;
+                double y = 5.0 + 1.9 * j;
+                PARTICLES.add(
+                        new Particle(
+                                OBSTACLES.size() + PARTICLES.size(),
+                                x, 0.0, 0.0, y, 0.0, 0.0, 1.0, 1.0));
+            }
+        }
+    }
+
+    private static final Config CONFIG =
+            new Config.Builder()
+                    .width(5.0 + 1.9 * 8 + 5.0)
+                    .length(200 + 1.9 * 10)
+                    .acceleration(0)
+                    .normalK(250)
+                    .gamma(2.5)
+                    .tangentialK(500)
+                    .integrationStep(0.001)
+                    .snapshotStep(10)
+                    .maxTime(1)
+                    .build();
+
+    @Test
+    public void floatStateStaysInFloatAndCloseToDouble() {
+        Simulation doubleState =
+                PrecisionComparison.createSimulation(
+                        PARTICLES, OBSTACLES, CONFIG, StatePrecision.DOUBLE, new Random(42));
+        Simulation floatState =
+                PrecisionComparison.createSimulation(
+                        PARTICLES, OBSTACLES, CONFIG, StatePrecision.FLOAT, new Random(42));
+        doubleState.run();
+        floatState.run();
+
+        double[] x = floatState.getStore().getX();
+        double[] vy = floatState.getStore().getVy();
+        for (int i = 0; i < x.length; i++) {
+            assertEquals((float) x[i], x[i]);
+            assertEquals((float) vy[i], vy[i]);
+        }
+
+        // One second of a block expanding without acceleration. Around x = 90
+        // a float resolves 7.6e-6, about what a slow particle moves in a step,
+        // so the positions separate by more than the rounding of one step but
+        // stay far below the radius
+        assertArrayEquals(doubleState.getStore().getX(), x, 1e-2);
+        assertArrayEquals(doubleState.getStore().getVy(), vy, 1e-2);
+    }
+
+    @Test
+    public void deviationIsUndefinedWithoutDischarges() {
+        List<PrecisionComparison.Result> results =
+                new PrecisionComparison(PARTICLES, OBSTACLES, CONFIG).compare();
+
+        assertEquals(2, results.size());
+        for (PrecisionComparison.Result result : results) {
+            assertEquals(0, result.discharges());
+            assertEquals(0, result.maxCurveDifference());
+            assertTrue(Double.isNaN(result.flowRateDeviation()));
+        }
+        assertEquals(StatePrecision.DOUBLE, results.get(0).precision());
+    }
+}
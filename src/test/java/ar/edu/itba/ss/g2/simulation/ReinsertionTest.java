@@ -0,0 +1,143 @@
+package ar.edu.itba.ss.g2.simulation;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import ar.edu.itba.ss.g2.model.Particle;
+import ar.edu.itba.ss.g2.model.ParticleStore;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class ReinsertionTest {
+
+    private static final double LENGTH = 40;
+    private static final double WIDTH = 12;
+    private static final double SKIN = 1;
+
+    private static ParticleStore createStore() {
+        List<Particle> obstacles = new ArrayList<>();
+        List<Particle> particles = new ArrayList<>();
+
+        // The first two reach x < 0
+        obstacles.add(new Particle(0, 0.3, 0.0, 0.0, 6.0, 0.0, 0.0, 0.0, 1.0));
+        obstacles.add(new Particle(1, -0.5, 0.0, 0.0, 2.0, 0.0, 0.0, 0.0, 1.0));
+        obstacles.add(new Particle(2, 20.0, 0.0, 0.0, 6.0, 0.0, 0.0, 0.0, 1.0));
+
+        for (int i = 0; i < 20; i++) {
+            for (int j = 0; j < 5; j++) {
+                double x = 2.0 + 2.0 * i;
+                double y = 1.5 + 2.2 * j;
+                particles.add(
+                        new Particle(
+                                obstacles.size() + particles.size(),
+                                x, 0.0, 0.0, y, 0.0, 0.0, 1.0, 0.5 + 0.1 * j));
+            }
+        }
+
+        return new ParticleStore(obstacles, particles);
+    }
+
+    // The reinsertion before the cell grid: every particle past x = length,
+    // in index order, tried against every body
+    private static int reinsertAll(ParticleStore store, Random random) {
+        double[] px = store.getX();
+        double[] py = store.getY();
+        double[] pradius = store.getRadius();
+
+        int count = 0;
+        for (int i = store.getFirstParticle(); i < store.size(); i++) {
+            if (px[i] <= LENGTH) {
+                continue;
+            }
+            count++;
+
+            double radius = pradius[i];
+            double x = -radius;
+            double y = py[i];
+
+            boolean overlapping;
+            do {
+                overlapping = false;
+                for (int j = 0; j < store.size(); j++) {
+                    if (j != i) {
+                        double dx = x - px[j];
+                        double dy = y - py[j];
+                        if (Math.sqrt(dx * dx + dy * dy) < radius + pradius[j]) {
+                            overlapping = true;
+                            break;
+                        }
+                    }
+                }
+                if (overlapping) {
+                    y = radius + random.nextDouble() * (WIDTH - 2 * radius);
+                    x -= radius;
+                }
+            } while (overlapping);
+
+            px[i] = x;
+            py[i] = y;
+        }
+        return count;
+    }
+
+    @Test
+    public void matchesScanOfEveryBody() {
+        ParticleStore store = createStore();
+        ParticleStore reference = createStore();
+
+        VerletList verletList = new VerletList(store, LENGTH, WIDTH, SKIN);
+        Reinsertion reinsertion =
+                new Reinsertion(store, verletList.getCellIndexMethod(), LENGTH, WIDTH);
+
+        Random motion = new Random(1);
+        Random random = new Random(42);
+        Random referenceRandom = new Random(42);
+
+        long rebuilds = 0;
+        int maxDischarged = 0;
+        long discharges = 0;
+
+        for (int step = 0; step < 2_000; step++) {
+            // Less than skin / 2 per step, so the lists are kept between
+            // rebuilds as in a run
+            for (int i = store.getFirstParticle(); i < store.size(); i++) {
+                double dx = 0.4 * motion.nextDouble();
+                double dy = 0.1 * (motion.nextDouble() - 0.5);
+                double radius = store.getRadius()[i];
+                double y = Math.min(WIDTH - radius, Math.max(radius, store.getY()[i] + dy));
+
+                store.getX()[i] += dx;
+                store.getY()[i] = y;
+                reference.getX()[i] += dx;
+                reference.getY()[i] = y;
+            }
+
+            if (verletList.update(store)) {
+                rebuilds++;
+            }
+
+            int discharged = reinsertion.findDischarged();
+            if (discharged > 0) {
+                reinsertion.reinsert(discharged, random, StepProfiler.DISABLED);
+            }
+
+            assertEquals(reinsertAll(reference, referenceRandom), discharged, "Step " + step);
+            assertArrayEquals(reference.getX(), store.getX(), "Step " + step);
+            assertArrayEquals(reference.getY(), store.getY(), "Step " + step);
+
+            maxDischarged = Math.max(maxDischarged, discharged);
+            discharges += discharged;
+        }
+
+        // The lists were kept between steps, and some steps discharged
+        // several particles
+        assertTrue(rebuilds < 2_000, "Rebuilds: " + rebuilds);
+        assertTrue(maxDischarged >= 2, "Most discharges in a step: " + maxDischarged);
+        assertTrue(discharges > 500, "Discharges: " + discharges);
+    }
+}
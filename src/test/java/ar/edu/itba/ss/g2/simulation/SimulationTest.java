@@ -0,0 +1,413 @@
+package ar.edu.itba.ss.g2.simulation;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import ar.edu.itba.ss.g2.config.ClogPolicy;
+import ar.edu.itba.ss.g2.config.Config;
+import ar.edu.itba.ss.g2.config.ForceKernel;
+import ar.edu.itba.ss.g2.model.Particle;
+
+import com.sun.management.ThreadMXBean;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class SimulationTest {
+
+    // Overlapping block of particles in the middle of a long channel: it
+    // expands against the walls and obstacles but, without acceleration,
+    // no particle leaves, so every step only exercises forces and integration
+    private static Simulation createSimulation(Config.Builder builder) {
+        return createBlock(10, 8, 20, 200, builder);
+    }
+
+    // Larger block, with enough contacts to split the pairs in several work
+    // units of the parallel engine
+    private static Simulation createLargeBlock(Config.Builder builder) {
+        return createBlock(60, 40, 5.0 + 1.9 * 40 + 5.0, 200 + 1.9 * 60, builder);
+    }
+
+    private static Simulation createBlock(
+            int columns, int rows, double width, double length, Config.Builder builder) {
+        List<Particle> obstacles = new ArrayList<>();
+        List<Particle> particles = new ArrayList<>();
+
+        for (int i = 0; i < 4; i++) {
+            obstacles.add(new Particle(i, 90.0 + 6 * i, 0.0, 0.0, 3.0, 0.0, 0.0, 0.0, 1.0));
+        }
+
+        for (int i = 0; i < columns; i++) {
+            for (int j = 0; j < rows; j++) {
+                double x = 90.0 + 1.9 * i;
+                double y = 5.0 + 1.9 * j;
+                particles.add(
+                        new Particle(
+                                obstacles.size() + particles.size(),
+                                x, 0.0, 0.0, y, 0.0, 0.0, 1.0, 1.0));
+            }
+        }
+
+        Config config =
+                builder.width(width)
+                        .length(length)
+                        .acceleration(0)
+                        .normalK(250)
+                        .gamma(2.5)
+                        .tangentialK(500)
+                        .integrationStep(0.001)
+                        .snapshotStep(10)
+                        .maxTime(1)
+                        .build();
+
+        return new Simulation(particles, obstacles, config, new Random(42));
+    }
+
+    // Channel with a staggered array of obstacles, where the flow under
+    // acceleration reaches a steady state within tens of seconds
+    private static Simulation createChannel(Config.Builder builder) {
+        List<Particle> obstacles = new ArrayList<>();
+        List<Particle> particles = new ArrayList<>();
+
+        for (int i = 0; i < 5; i++) {
+            for (int j = 0; j < 3; j++) {
+                double x = 12.0 + 8 * i;
+                double y = 4.0 + 6 * j + (i % 2) * 3;
+                obstacles.add(new Particle(obstacles.size(), x, 0.0, 0.0, y, 0.0, 0.0, 0.0, 1.0));
+            }
+        }
+
+        for (int i = 0; i < 24; i++) {
+            for (int j = 0; j < 8; j++) {
+                double x = 1.5 + 2.5 * i;
+                double y = 1.5 + 2.4 * j;
+                boolean free = true;
+                for (Particle obstacle : obstacles) {
+                    if (Math.hypot(obstacle.getX() - x, obstacle.getY() - y) < 2.2) {
+                        free = false;
+                    }
+                }
+                if (free) {
+                    particles.add(
+                            new Particle(
+                                    obstacles.size() + particles.size(),
+                                    x, 0.0, 0.0, y, 0.0, 0.0, 1.0, 1.0));
+                }
+            }
+        }
+
+        Config config =
+                builder.width(20)
+                        .length(60)
+                        .acceleration(1)
+                        .normalK(250)
+                        .gamma(2.5)
+                        .tangentialK(500)
+                        .integrationStep(0.001)
+                        .snapshotStep(1000)
+                        .build();
+
+        return new Simulation(particles, obstacles, config, new Random(42));
+    }
+
+    @Test
+    public void integrateDoesNotAllocateAfterWarmUp() {
+        ThreadMXBean threadBean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        Simulation simulation = createSimulation(new Config.Builder());
+        simulation.initialize();
+
+        for (int i = 0; i < 2_000; i++) {
+            simulation.integrate();
+        }
+
+        // getThreadAllocatedBytes may allocate on its own, measure that too
+        long start = threadBean.getThreadAllocatedBytes(threadId);
+        long overhead = threadBean.getThreadAllocatedBytes(threadId) - start;
+
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 1_000; i++) {
+            simulation.integrate();
+        }
+        long after = threadBean.getThreadAllocatedBytes(threadId);
+
+        assertEquals(0, after - before - overhead, "Bytes allocated by 1000 steps");
+    }
+
+    @Test
+    public void trajectoryDoesNotDependOnThreadCount() {
+        // Enough contacts to split the pairs in several work units
+        Simulation serial = createLargeBlock(new Config.Builder());
+        Simulation parallel = createLargeBlock(new Config.Builder().threads(4));
+
+        serial.initialize();
+        parallel.initialize();
+
+        for (int i = 0; i < 200; i++) {
+            serial.integrate();
+            parallel.integrate();
+        }
+        parallel.close();
+
+        assertArrayEquals(serial.getStore().getX(), parallel.getStore().getX());
+        assertArrayEquals(serial.getStore().getY(), parallel.getStore().getY());
+        assertArrayEquals(serial.getStore().getVx(), parallel.getStore().getVx());
+        assertArrayEquals(serial.getStore().getVy(), parallel.getStore().getVy());
+    }
+
+    @Test
+    public void vectorKernelMatchesScalarKernel() {
+        // Surefire adds jdk.incubator.vector, without it this would compare
+        // the scalar kernel with itself
+        Simulation scalar = createLargeBlock(new Config.Builder());
+        Simulation vector = createLargeBlock(new Config.Builder().forceKernel(ForceKernel.VECTOR));
+        Simulation parallelVector =
+                createLargeBlock(new Config.Builder().threads(4).forceKernel(ForceKernel.VECTOR));
+        assertEquals(ForceKernel.VECTOR, vector.getForceEngine().getForceKernel());
+
+        scalar.initialize();
+        vector.initialize();
+        parallelVector.initialize();
+
+        for (int i = 0; i < 200; i++) {
+            scalar.integrate();
+            vector.integrate();
+            parallelVector.integrate();
+        }
+        parallelVector.close();
+
+        for (Simulation simulation : List.of(vector, parallelVector)) {
+            assertArrayEquals(scalar.getStore().getX(), simulation.getStore().getX());
+            assertArrayEquals(scalar.getStore().getY(), simulation.getStore().getY());
+            assertArrayEquals(scalar.getStore().getVx(), simulation.getStore().getVx());
+            assertArrayEquals(scalar.getStore().getVy(), simulation.getStore().getVy());
+        }
+    }
+
+    @Test
+    public void resumedRunMatchesUninterruptedRun() throws IOException {
+        // With a skin the Verlet lists are also carried over
+        Simulation uninterrupted = createSimulation(new Config.Builder().skin(0.2));
+        uninterrupted.run();
+
+        Simulation interrupted =
+                createSimulation(new Config.Builder().skin(0.2).checkpointInterval(0.5));
+        List<Checkpoint> checkpoints = new ArrayList<>();
+        interrupted.setCheckpointListener(checkpoints::add);
+        interrupted.run();
+
+        Simulation resumed = createSimulation(new Config.Builder().skin(0.2));
+        resumed.restore(checkpoints.get(0));
+        resumed.run();
+
+        assertArrayEquals(uninterrupted.getStore().getX(), resumed.getStore().getX());
+        assertArrayEquals(uninterrupted.getStore().getY(), resumed.getStore().getY());
+        assertArrayEquals(uninterrupted.getStore().getVx(), resumed.getStore().getVx());
+        assertArrayEquals(uninterrupted.getStore().getVy(), resumed.getStore().getVy());
+    }
+
+    @Test
+    public void profilingDoesNotChangeTrajectory() {
+        Simulation plain = createSimulation(new Config.Builder().skin(0.2));
+        plain.run();
+
+        Simulation profiled = createSimulation(new Config.Builder().skin(0.2).profile(true));
+        profiled.run();
+
+        assertArrayEquals(plain.getStore().getX(), profiled.getStore().getX());
+        assertArrayEquals(plain.getStore().getY(), profiled.getStore().getY());
+        assertArrayEquals(plain.getStore().getVx(), profiled.getStore().getVx());
+        assertArrayEquals(plain.getStore().getVy(), profiled.getStore().getVy());
+
+        StepProfiler profiler = profiled.getProfiler();
+        assertEquals(1000, profiler.getSteps());
+        assertEquals(1000, profiler.getPhase(StepProfiler.Phase.PREDICTOR).getCount());
+        // Two evaluations per Beeman step plus the two of the initialization
+        assertEquals(2002, profiler.getPhase(StepProfiler.Phase.FORCES).getCount());
+        assertTrue(profiler.getContacts().getMax() > 0);
+    }
+
+    @Test
+    public void stopsAfterDischarges() {
+        // Single file without contacts: every particle leaves in its own step,
+        // so the run can't overshoot by discharging several at once
+        List<Particle> particles = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            particles.add(new Particle(i, 5.0 + 10 * i, 0.0, 0.0, 2.5, 0.0, 0.0, 1.0, 1.0));
+        }
+
+        Config config =
+                new Config.Builder()
+                        .width(5)
+                        .length(60)
+                        .acceleration(1)
+                        .normalK(250)
+                        .gamma(2.5)
+                        .tangentialK(500)
+                        .integrationStep(0.001)
+                        .snapshotStep(1000)
+                        .maxTime(100)
+                        .stopDischarges(5)
+                        .build();
+        Simulation simulation =
+                new Simulation(particles, new ArrayList<>(), config, new Random(42));
+        simulation.run();
+
+        assertEquals(StopReason.DISCHARGES, simulation.getStopReason());
+        assertEquals(5, simulation.getDischargeTimes().size());
+        assertEquals(5, simulation.getFlowAnalytics().getDischarges());
+        assertTrue(simulation.getCurrentTime() < 100);
+    }
+
+    @Test
+    public void stopsAtTargetConfidence() {
+        Simulation simulation =
+                createChannel(
+                        new Config.Builder().maxTime(200).flowWindow(2).targetConfidence(0.5));
+        simulation.run();
+
+        assertEquals(StopReason.CONFIDENCE, simulation.getStopReason());
+        assertTrue(simulation.getCurrentTime() < 200);
+
+        FlowAnalytics flow = simulation.getFlowAnalytics();
+        assertTrue(flow.getBatches() >= 5);
+        assertTrue(1.96 * flow.getStandardError() <= 0.5 * flow.getSteadyFlowRate());
+    }
+
+    @Test
+    public void clogAbortsRun() {
+        // Without acceleration nothing is discharged, and the expanding block
+        // never gets near this kinetic energy, so the channel is clogged
+        Simulation simulation =
+                createSimulation(
+                        new Config.Builder()
+                                .clogInterval(0.2)
+                                .clogEnergy(10)
+                                .clogPolicy(ClogPolicy.ABORT));
+        simulation.run();
+
+        assertEquals(StopReason.CLOG, simulation.getStopReason());
+        assertEquals(1, simulation.getClogEvents().size());
+
+        ClogEvent event = simulation.getClogEvents().get(0);
+        assertEquals(ClogPolicy.ABORT, event.action());
+        assertEquals(0.2, event.time(), 1e-9);
+        assertTrue(event.kineticEnergy() < 10);
+        assertTrue(simulation.getCurrentTime() < 1);
+
+        // Checking whether to stop doesn't record the clog again
+        double time = simulation.getCurrentTime();
+        simulation.runUntil(2);
+
+        assertEquals(StopReason.CLOG, simulation.getStopReason());
+        assertEquals(1, simulation.getClogEvents().size());
+        assertEquals(time, simulation.getCurrentTime());
+    }
+
+    @Test
+    public void perturbationEvaluatesForcesOfKickedState() throws IOException {
+        Simulation simulation =
+                createSimulation(
+                        new Config.Builder()
+                                .clogInterval(0.2)
+                                .clogEnergy(10)
+                                .clogPolicy(ClogPolicy.PERTURB));
+        simulation.runUntil(0.2);
+        assertEquals(1, simulation.getClogEvents().size());
+
+        // The forces kept by the integrator are those of the kicked
+        // velocities, as if it started from them
+        ByteArrayOutputStream kept = new ByteArrayOutputStream();
+        simulation.getIntegrator().writeState(new DataOutputStream(kept));
+
+        simulation.getIntegrator().initialize();
+        ByteArrayOutputStream fresh = new ByteArrayOutputStream();
+        simulation.getIntegrator().writeState(new DataOutputStream(fresh));
+
+        assertArrayEquals(fresh.toByteArray(), kept.toByteArray());
+    }
+
+    @Test
+    public void clogPerturbationKeepsRunning() {
+        Simulation simulation =
+                createSimulation(
+                        new Config.Builder()
+                                .clogInterval(0.2)
+                                .clogEnergy(10)
+                                .clogPolicy(ClogPolicy.PERTURB));
+        simulation.run();
+
+        assertEquals(StopReason.MAX_TIME, simulation.getStopReason());
+        assertEquals(1, simulation.getCurrentTime(), 1e-9);
+
+        // One every clogInterval, each after the kick of the previous one
+        List<ClogEvent> events = simulation.getClogEvents();
+        assertTrue(events.size() >= 3, "Clog events: " + events.size());
+        for (int i = 0; i < events.size(); i++) {
+            assertEquals(ClogPolicy.PERTURB, events.get(i).action());
+            if (i > 0) {
+                assertTrue(events.get(i).time() - events.get(i - 1).time() >= 0.2 - 1e-9);
+            }
+        }
+    }
+
+    @Test
+    public void continuationMeasuresEachAcceleration() {
+        Simulation simulation = createChannel(new Config.Builder());
+        simulation.runUntil(10);
+
+        List<Continuation.Step> received = new ArrayList<>();
+        List<Continuation.Step> steps =
+                Continuation.run(simulation, List.of(1.0, 2.0), 1, 6, 2, received::add);
+        assertEquals(2, steps.size());
+        assertEquals(steps, received);
+
+        List<Double> dischargeTimes = simulation.getDischargeTimes();
+        for (Continuation.Step step : steps) {
+            assertEquals(StopReason.MAX_TIME, step.stopReason());
+            assertEquals(6, step.end() - step.start(), 1e-9);
+
+            long discharges =
+                    dischargeTimes.stream()
+                            .filter(time -> time >= step.start() && time < step.end())
+                            .count();
+            assertEquals(discharges, step.discharges());
+            assertTrue(step.discharges() > 0);
+            assertEquals(step.discharges() / 6.0, step.flowRate(), 1e-9);
+            // Three windows of 2
+            assertTrue(step.standardError() >= 0);
+        }
+        assertEquals(11, steps.get(0).start(), 1e-9);
+        assertEquals(steps.get(0).end() + 1, steps.get(1).start(), 1e-9);
+    }
+
+    @Test
+    public void continuationStopsAtClog() {
+        Simulation simulation =
+                createSimulation(
+                        new Config.Builder()
+                                .clogInterval(0.2)
+                                .clogEnergy(10)
+                                .clogPolicy(ClogPolicy.ABORT));
+        simulation.runUntil(0.1);
+
+        // The clog at 0.2 aborts the measurement of the first step
+        List<Continuation.Step> steps =
+                Continuation.run(simulation, List.of(0.0, 1.0, 2.0), 0.05, 1, 0.5);
+
+        assertEquals(1, steps.size());
+        assertEquals(StopReason.CLOG, steps.get(0).stopReason());
+        assertEquals(0, steps.get(0).discharges());
+        assertEquals(0, steps.get(0).flowRate());
+        assertEquals(1, simulation.getClogEvents().size());
+    }
+}
@@ -0,0 +1,160 @@
+package ar.edu.itba.ss.g2.simulation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import ar.edu.itba.ss.g2.config.Config;
+import ar.edu.itba.ss.g2.config.ForceKernel;
+import ar.edu.itba.ss.g2.model.Particle;
+import ar.edu.itba.ss.g2.model.ParticleStore;
+import ar.edu.itba.ss.g2.util.AsyncSnapshotWriter;
+import ar.edu.itba.ss.g2.util.FrameEncoder;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class TimeStepControllerTest {
+
+    private static final double MAX_STEP = 1e-3;
+
+    // Free particle of unit radius: the only limit is approaching a
+    // twentieth of a radius at its speed, 0.025 / speed
+    private static TimeStepController createController(double speed, double minStep) {
+        ParticleStore store =
+                new ParticleStore(
+                        List.of(),
+                        List.of(new Particle(0, 5.0, speed, 0.0, 5.0, 0.0, 0.0, 1.0, 1.0)));
+        ForceEngine forceEngine =
+                new ForceEngine(
+                        store,
+                        new VerletList(store, 20, 10, 0),
+                        10,
+                        0,
+                        250,
+                        2.5,
+                        500,
+                        1,
+                        ForceKernel.SCALAR);
+
+        return new TimeStepController(store, forceEngine, minStep, MAX_STEP, 250, 2.5, 500);
+    }
+
+    @Test
+    public void stepIsMaxStepOverPowerOfTwo() {
+        for (double speed : new double[] {0.1, 10, 30, 60, 200, 1000}) {
+            double limit = 0.025 / speed;
+            double step = createController(speed, MAX_STEP / 100).next();
+
+            // Largest MAX_STEP / 2^k under the limit
+            double levels = MAX_STEP / step;
+            assertEquals(Math.scalb(1.0, Math.getExponent(levels)), levels, "Speed " + speed);
+            assertTrue(step <= limit, "Speed " + speed);
+            assertTrue(step == MAX_STEP || 2 * step > limit, "Speed " + speed);
+        }
+    }
+
+    @Test
+    public void stepDoesNotGoUnderMinStep() {
+        // The limit is 2.5e-7, under both minimums. The level reached is the
+        // smallest at or above the minimum, even if it isn't a level itself
+        assertEquals(MAX_STEP / 64, createController(1e5, MAX_STEP / 100).next());
+        assertEquals(MAX_STEP / 128, createController(1e5, MAX_STEP / 128).next());
+    }
+
+    // Times of the frames, read after the writer is closed
+    private static class TimeRecorder implements FrameEncoder {
+        private final List<Double> times = new ArrayList<>();
+
+        @Override
+        public void encode(double time, double[] x, double[] y) {
+            times.add(time);
+        }
+
+        @Override
+        public void flush() {}
+
+        @Override
+        public void close() {}
+    }
+
+    @Test
+    public void snapshotsLandOnSnapshotSteps() throws Exception {
+        // Overlapping block, as in SimulationTest, so the step changes as the
+        // contacts open. 0.03 is not a multiple of any level
+        List<Particle> obstacles = new ArrayList<>();
+        List<Particle> particles = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            for (int j = 0; j < 6; j++) {
+                particles.add(
+                        new Particle(
+                                particles.size(),
+                                90.0 + 1.9 * i, 0.0, 0.0, 5.0 + 1.9 * j, 0.0, 0.0, 1.0, 1.0));
+            }
+        }
+
+        Config config =
+                new Config.Builder()
+                        .width(20)
+                        .length(200)
+                        .acceleration(1)
+                        .normalK(250)
+                        .gamma(2.5)
+                        .tangentialK(500)
+                        .integrationStep(MAX_STEP)
+                        .adaptiveStep(true)
+                        .snapshotStep(0.03)
+                        .maxTime(0.3)
+                        .build();
+
+        TimeRecorder recorder = new TimeRecorder();
+        Simulation simulation;
+        try (AsyncSnapshotWriter writer = new AsyncSnapshotWriter(recorder, particles.size())) {
+            simulation = new Simulation(particles, obstacles, config, new Random(42), writer);
+            simulation.run();
+        }
+
+        assertEquals(11, recorder.times.size());
+        for (int k = 0; k < recorder.times.size(); k++) {
+            assertEquals(k * 0.03, recorder.times.get(k));
+        }
+
+        TimeStepController controller = simulation.getTimeStepController();
+        assertTrue(controller.getSmallestStep() < controller.getLargestStep());
+        assertTrue(controller.getLargestStep() <= MAX_STEP);
+        assertEquals(10 * 0.03, simulation.getCurrentTime());
+    }
+
+    @Test
+    public void maxIntegrationStepAboveIntegrationStep() {
+        // A slow particle alone only limits the step by the ceiling
+        Config config =
+                new Config.Builder()
+                        .width(10)
+                        .length(20)
+                        .acceleration(0)
+                        .normalK(250)
+                        .gamma(2.5)
+                        .tangentialK(500)
+                        .integrationStep(MAX_STEP)
+                        .adaptiveStep(true)
+                        .maxIntegrationStep(8 * MAX_STEP)
+                        .snapshotStep(0.1)
+                        .maxTime(1)
+                        .build();
+        Simulation simulation =
+                new Simulation(
+                        List.of(new Particle(0, 5.0, 0.1, 0.0, 5.0, 0.0, 0.0, 1.0, 1.0)),
+                        List.of(),
+                        config,
+                        new Random(42));
+        simulation.run();
+
+        // 0.1 = 12 * 0.008 + 0.004, the last step of each snapshot is shorter
+        TimeStepController controller = simulation.getTimeStepController();
+        assertEquals(8 * MAX_STEP, controller.getLargestStep());
+        assertEquals(130, controller.getSteps());
+    }
+}
@@ -0,0 +1,193 @@
+package ar.edu.itba.ss.g2.simulation;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import ar.edu.itba.ss.g2.model.Particle;
+import ar.edu.itba.ss.g2.model.ParticleStore;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+public class VerletListTest {
+
+    private static final double LENGTH = 40;
+    private static final double WIDTH = 12;
+    private static final double SKIN = 0.4;
+
+    // Crowded channel with a few obstacles, so many bodies touch
+    private static ParticleStore createStore() {
+        List<Particle> obstacles = new ArrayList<>();
+        List<Particle> particles = new ArrayList<>();
+
+        for (int i = 0; i < 4; i++) {
+            obstacles.add(new Particle(i, 8.0 + 8 * i, 0.0, 0.0, 6.0, 0.0, 0.0, 0.0, 1.0));
+        }
+
+        Random random = new Random(7);
+        for (int i = 0; i < 300; i++) {
+            double radius = 0.4 + 0.2 * random.nextDouble();
+            particles.add(
+                    new Particle(
+                            obstacles.size() + particles.size(),
+                            2 + (LENGTH - 4) * random.nextDouble(),
+                            0.0,
+                            0.0,
+                            2 + (WIDTH - 4) * random.nextDouble(),
+                            0.0,
+                            0.0,
+                            1.0,
+                            radius));
+        }
+
+        return new ParticleStore(obstacles, particles);
+    }
+
+    // Moves every particle less than distance, in a random direction
+    private static void move(ParticleStore store, Random random, double distance) {
+        for (int i = store.getFirstParticle(); i < store.size(); i++) {
+            double angle = 2 * Math.PI * random.nextDouble();
+            double length = distance * random.nextDouble();
+            store.getX()[i] += length * Math.cos(angle);
+            store.getY()[i] += length * Math.sin(angle);
+        }
+    }
+
+    // Overlapping bodies among the pairs of the lists, as i * size + j with i < j
+    private static Set<Long> contacts(ParticleStore store, CellIndexMethod cellIndexMethod) {
+        Set<Long> contacts = new HashSet<>();
+        addContacts(
+                store,
+                contacts,
+                cellIndexMethod.getPairI(),
+                cellIndexMethod.getPairJ(),
+                cellIndexMethod.getPairCount());
+        addContacts(
+                store,
+                contacts,
+                cellIndexMethod.getObstaclePairI(),
+                cellIndexMethod.getObstaclePairJ(),
+                cellIndexMethod.getObstaclePairCount());
+        return contacts;
+    }
+
+    private static void addContacts(
+            ParticleStore store, Set<Long> contacts, int[] pairI, int[] pairJ, int count) {
+        for (int k = 0; k < count; k++) {
+            int i = Math.min(pairI[k], pairJ[k]);
+            int j = Math.max(pairI[k], pairJ[k]);
+            double dx = store.getX()[i] - store.getX()[j];
+            double dy = store.getY()[i] - store.getY()[j];
+            if (Math.sqrt(dx * dx + dy * dy) < store.getRadius()[i] + store.getRadius()[j]) {
+                contacts.add((long) i * store.size() + j);
+            }
+        }
+    }
+
+    @Test
+    public void keptListsFindTheContactsOfAFreshBuild() {
+        ParticleStore store = createStore();
+        VerletList verletList = new VerletList(store, LENGTH, WIDTH, SKIN);
+        assertTrue(verletList.update(store));
+
+        Random random = new Random(1);
+        for (int step = 0; step < 20; step++) {
+            // Far less than skin / 2 from the last rebuild
+            move(store, random, SKIN / 100);
+            verletList.update(store);
+
+            VerletList fresh = new VerletList(store, LENGTH, WIDTH, 0);
+            fresh.update(store);
+
+            Set<Long> expected = contacts(store, fresh.getCellIndexMethod());
+            assertFalse(expected.isEmpty());
+            assertEquals(
+                    expected, contacts(store, verletList.getCellIndexMethod()), "Step " + step);
+        }
+
+        // Every step kept the lists of the first build
+        assertEquals(1, verletList.getRebuildCount());
+        assertEquals(21, verletList.getUpdateCount());
+    }
+
+    @Test
+    public void rebuildsOnceAParticleMovesMoreThanHalfTheSkin() {
+        ParticleStore store = createStore();
+        VerletList verletList = new VerletList(store, LENGTH, WIDTH, SKIN);
+        verletList.update(store);
+
+        int i = store.getFirstParticle() + 10;
+        double x = store.getX()[i];
+
+        store.getX()[i] = x + 0.49 * SKIN;
+        assertFalse(verletList.update(store));
+
+        store.getX()[i] = x + 0.51 * SKIN;
+        assertTrue(verletList.update(store));
+        assertEquals(2, verletList.getRebuildCount());
+
+        // The displacement counts from the new build
+        store.getX()[i] = x + 0.9 * SKIN;
+        assertFalse(verletList.update(store));
+    }
+
+    @Test
+    public void restoredListsHaveTheSamePairs() throws IOException {
+        ParticleStore store = createStore();
+        VerletList verletList = new VerletList(store, LENGTH, WIDTH, SKIN);
+        verletList.update(store);
+
+        // Kept lists, built before the particles moved
+        move(store, new Random(1), SKIN / 4);
+        assertFalse(verletList.update(store));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        verletList.writeState(new DataOutputStream(bytes));
+
+        double[] x = store.getX().clone();
+        double[] y = store.getY().clone();
+
+        VerletList restored = new VerletList(store, LENGTH, WIDTH, SKIN);
+        restored.readState(
+                new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), store);
+
+        CellIndexMethod expected = verletList.getCellIndexMethod();
+        CellIndexMethod actual = restored.getCellIndexMethod();
+
+        assertEquals(expected.getPairCount(), actual.getPairCount());
+        assertArrayEquals(
+                Arrays.copyOf(expected.getPairI(), expected.getPairCount()),
+                Arrays.copyOf(actual.getPairI(), actual.getPairCount()));
+        assertArrayEquals(
+                Arrays.copyOf(expected.getPairJ(), expected.getPairCount()),
+                Arrays.copyOf(actual.getPairJ(), actual.getPairCount()));
+
+        assertEquals(expected.getObstaclePairCount(), actual.getObstaclePairCount());
+        assertArrayEquals(
+                Arrays.copyOf(expected.getObstaclePairI(), expected.getObstaclePairCount()),
+                Arrays.copyOf(actual.getObstaclePairI(), actual.getObstaclePairCount()));
+        assertArrayEquals(
+                Arrays.copyOf(expected.getObstaclePairJ(), expected.getObstaclePairCount()),
+                Arrays.copyOf(actual.getObstaclePairJ(), actual.getObstaclePairCount()));
+
+        // The store is left at the current positions, and the restored lists
+        // are kept from the same reference
+        assertArrayEquals(x, store.getX());
+        assertArrayEquals(y, store.getY());
+        assertFalse(restored.update(store));
+        assertEquals(verletList.getRebuildCount(), restored.getRebuildCount());
+    }
+}
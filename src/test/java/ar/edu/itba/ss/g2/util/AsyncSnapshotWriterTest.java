@@ -0,0 +1,50 @@
+package ar.edu.itba.ss.g2.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import ar.edu.itba.ss.g2.model.Particle;
+import ar.edu.itba.ss.g2.model.ParticleStore;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+public class AsyncSnapshotWriterTest {
+
+    @TempDir Path directory;
+
+    @Test
+    public void writesEveryFrameInOrder() throws Exception {
+        ParticleStore store =
+                new ParticleStore(
+                        List.of(new Particle(0, 1.0, 0.0, 0.0, 1.0, 0.0, 0.0, 0.0, 1.0)),
+                        List.of(
+                                new Particle(1, 2.0, 0.0, 0.0, 3.0, 0.0, 0.0, 1.0, 1.0),
+                                new Particle(2, 4.0, 0.0, 0.0, 5.0, 0.0, 0.0, 1.0, 1.0)));
+
+        Path file = directory.resolve("snapshots.txt");
+        AsyncSnapshotWriter writer =
+                new AsyncSnapshotWriter(new TextFrameEncoder(file, 2), 2, 2);
+
+        // More frames than buffers, so the simulation has to wait for the writer
+        for (int frame = 0; frame < 10; frame++) {
+            store.getX()[1] = frame;
+            writer.submit(frame * 0.5, store);
+        }
+        writer.close();
+
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(List.of("2", "10"), List.of(lines.get(0).trim().split("\\s+")));
+        assertEquals(1 + 10 * 3, lines.size());
+
+        for (int frame = 0; frame < 10; frame++) {
+            int offset = 1 + frame * 3;
+            assertEquals(frame * 0.5, Double.parseDouble(lines.get(offset)));
+            assertEquals(frame, Double.parseDouble(lines.get(offset + 1).split(" ")[0]));
+            assertEquals("4.00000 5.00000", lines.get(offset + 2));
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package ar.edu.itba.ss.g2.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+public class TrajectoryReaderTest {
+
+    private static final int PARTICLES = 5;
+    private static final int FRAMES = 20;
+
+    @TempDir Path directory;
+
+    @Test
+    public void readsFramesInAnyOrder() throws Exception {
+        Path file = write(64);
+
+        try (TrajectoryReader reader = new TrajectoryReader(file)) {
+            assertEquals(PARTICLES, reader.getParticleCount());
+            assertEquals(FRAMES, reader.getFrameCount());
+            assertEquals(0.5, reader.getSnapshotStep());
+            assertEquals(64, reader.getPrecision());
+
+            double[] x = new double[PARTICLES];
+            double[] y = new double[PARTICLES];
+            for (int frame : new int[] {17, 0, 19, 3}) {
+                assertEquals(frame * 0.5, reader.readFrame(frame, x, y));
+                assertArrayEquals(xs(frame), x);
+                assertArrayEquals(ys(frame), y);
+            }
+        }
+    }
+
+    @Test
+    public void singlePrecisionRoundsToFloat() throws Exception {
+        Path file = write(32);
+
+        try (TrajectoryReader reader = new TrajectoryReader(file)) {
+            double[] x = new double[PARTICLES];
+            double[] y = new double[PARTICLES];
+            reader.readFrame(11, x, y);
+
+            for (int i = 0; i < PARTICLES; i++) {
+                assertEquals((float) xs(11)[i], x[i]);
+                assertEquals((float) ys(11)[i], y[i]);
+            }
+        }
+    }
+
+    @Test
+    public void compressedFramesStayWithinTolerance() throws Exception {
+        Path file = directory.resolve("snapshots.bin");
+        try (BinaryFrameEncoder encoder =
+                new BinaryFrameEncoder(file, PARTICLES, 0.5, 1e-4, 7)) {
+            for (int frame = 0; frame < FRAMES; frame++) {
+                encoder.encode(frame * 0.5, xs(frame), ys(frame));
+            }
+        }
+
+        try (TrajectoryReader reader = new TrajectoryReader(file)) {
+            assertFramesWithin(reader, 0.5e-4);
+        }
+    }
+
+    @Test
+    public void readsCompressedFramesOfAnInterruptedRun() throws Exception {
+        Path file = directory.resolve("snapshots.bin");
+        try (BinaryFrameEncoder encoder =
+                new BinaryFrameEncoder(file, PARTICLES, 0.5, 1e-4, 7)) {
+            for (int frame = 0; frame < FRAMES; frame++) {
+                encoder.encode(frame * 0.5, xs(frame), ys(frame));
+            }
+            // Without the index written by close
+            encoder.flush();
+
+            try (TrajectoryReader reader = new TrajectoryReader(file)) {
+                assertFramesWithin(reader, 0.5e-4);
+            }
+        }
+    }
+
+    // Jumps backwards, forwards within a keyframe interval and across them
+    private static void assertFramesWithin(TrajectoryReader reader, double tolerance)
+            throws Exception {
+        assertEquals(FRAMES, reader.getFrameCount());
+
+        double[] x = new double[PARTICLES];
+        double[] y = new double[PARTICLES];
+        for (int frame : new int[] {17, 0, 19, 3, 4, 4, 15, 8, 9}) {
+            assertEquals(frame * 0.5, reader.readFrame(frame, x, y));
+            assertArrayEquals(xs(frame), x, tolerance);
+            assertArrayEquals(ys(frame), y, tolerance);
+        }
+    }
+
+    private Path write(int precision) throws Exception {
+        Path file = directory.resolve("snapshots.bin");
+        try (BinaryFrameEncoder encoder =
+                new BinaryFrameEncoder(file, PARTICLES, 0.5, precision)) {
+            for (int frame = 0; frame < FRAMES; frame++) {
+                encoder.encode(frame * 0.5, xs(frame), ys(frame));
+            }
+        }
+        return file;
+    }
+
+    private static double[] xs(int frame) {
+        double[] x = new double[PARTICLES];
+        for (int i = 0; i < PARTICLES; i++) {
+            x[i] = frame + i / 3.0;
+        }
+        return x;
+    }
+
+    private static double[] ys(int frame) {
+        double[] y = new double[PARTICLES];
+        for (int i = 0; i < PARTICLES; i++) {
+            y[i] = Math.PI * i - frame;
+        }
+        return y;
+    }
+}